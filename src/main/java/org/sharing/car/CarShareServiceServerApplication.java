@@ -16,21 +16,59 @@
 
 package org.sharing.car;
 
-import org.modelmapper.ModelMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.sharing.car.dto.DriverImportReportDTO;
+import org.sharing.car.mapper.DriverMapper;
+import org.sharing.car.mapper.TimedDriverMapper;
+import org.sharing.car.service.DriverImporter;
+import org.sharing.car.util.JsonMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
-@SpringBootApplication
+import java.nio.file.Paths;
+
+// R2DBC is wired by hand in ReactiveConfig, an auto-configured ConnectionFactory would replace the JDBC DataSource
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
+@EnableScheduling
 public class CarShareServiceServerApplication {
 
+    static final String IMPORT_OPTION = "import-drivers";
+
     public static void main(String[] args) {
         SpringApplication.run(CarShareServiceServerApplication.class, args);
     }
 
     @Bean
-    public ModelMapper modelMapper() {
-        return new ModelMapper();
+    public DriverMapper driverMapper(MeterRegistry meterRegistry) {
+        return new TimedDriverMapper(meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public ObjectMapper objectMapper() {
+        return JsonMapper.getObjectMapper();
+    }
+
+    // --import-drivers=<file> imports a .csv or .ndjson file, writes rejected records next to it and exits,
+    // non-zero when records were rejected. The importer is looked up lazily, test slices run without one.
+    @Bean
+    public ApplicationRunner driverImportRunner(ObjectProvider<DriverImporter> driverImporter, ConfigurableApplicationContext context) {
+        return args -> {
+            if (!args.containsOption(IMPORT_OPTION)) {
+                return;
+            }
+            DriverImportReportDTO report = driverImporter.getObject().importFile(Paths.get(args.getOptionValues(IMPORT_OPTION).get(0)));
+            int exitCode = (report.getRejected() == 0) ? 0 : 2;
+            System.exit(SpringApplication.exit(context, () -> exitCode));
+        };
     }
 
 }
@@ -0,0 +1,48 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Collections;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String DRIVERS = "drivers";
+    public static final String DRIVER_PAGES = "driverPages";
+
+    @Bean
+    public CacheManager cacheManager(@Value("${driver.cache.drivers.spec:maximumSize=10000,expireAfterWrite=10m,recordStats}") String driversSpec,
+                                     @Value("${driver.cache.pages.spec:maximumSize=200,expireAfterWrite=30s,recordStats}") String pagesSpec) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCacheNames(Collections.emptyList());
+        cacheManager.registerCustomCache(DRIVERS, Caffeine.from(driversSpec).build());
+        cacheManager.registerCustomCache(DRIVER_PAGES, Caffeine.from(pagesSpec).build());
+        // puts and evictions made inside a transaction only apply once it commits
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+}
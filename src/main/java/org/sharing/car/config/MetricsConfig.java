@@ -0,0 +1,103 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.sharing.car.service.DriverEmailFilter;
+import org.sharing.car.service.DriverLocationBuffer;
+import org.sharing.car.service.DriverLocationIndex;
+import org.sharing.car.service.DriverPositionHub;
+import org.sharing.car.service.DriverRequestExecutor;
+import org.sharing.car.service.DriverRoster;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    // registered directly: the repository metrics post processor initialises the registry before MeterBinder beans are bound
+    @Bean
+    public SmartInitializingSingleton driverLocationMetrics(MeterRegistry meterRegistry, DriverLocationBuffer locationBuffer,
+                                                            DriverLocationIndex locationIndex, DriverRoster roster) {
+        return () -> {
+            Gauge.builder("driver.location.buffer.size", locationBuffer, DriverLocationBuffer::size)
+                    .description("Driver positions waiting to be flushed")
+                    .register(meterRegistry);
+            Gauge.builder("driver.index.size", locationIndex, DriverLocationIndex::size)
+                    .description("Online drivers in the nearby index")
+                    .register(meterRegistry);
+            Gauge.builder("driver.roster.size", roster, DriverRoster::size)
+                    .description("Online drivers held in the in-memory roster")
+                    .register(meterRegistry);
+        };
+    }
+
+    @Bean
+    public SmartInitializingSingleton driverRequestMetrics(MeterRegistry meterRegistry, DriverRequestExecutor requestExecutor) {
+        return () -> {
+            Gauge.builder("driver.executor.queue.depth", requestExecutor, DriverRequestExecutor::getQueueDepth)
+                    .description("Driver lookups waiting for a pool thread")
+                    .register(meterRegistry);
+            Gauge.builder("driver.executor.active", requestExecutor, DriverRequestExecutor::getActiveCount)
+                    .description("Driver lookups currently running on the pool")
+                    .register(meterRegistry);
+            FunctionCounter.builder("driver.executor.rejected", requestExecutor, DriverRequestExecutor::getRejectedCount)
+                    .description("Driver lookups turned away with 503 because the queue was full")
+                    .register(meterRegistry);
+        };
+    }
+
+    @Bean
+    public SmartInitializingSingleton driverFeedMetrics(MeterRegistry meterRegistry, DriverPositionHub positionHub) {
+        return () -> {
+            Gauge.builder("driver.feed.subscribers", positionHub, DriverPositionHub::getSubscriberCount)
+                    .description("Open driver position feed subscriptions")
+                    .register(meterRegistry);
+            FunctionCounter.builder("driver.feed.conflated", positionHub, DriverPositionHub::getConflatedCount)
+                    .description("Queued positions replaced by a newer one for the same driver")
+                    .register(meterRegistry);
+            FunctionCounter.builder("driver.feed.dropped", positionHub, DriverPositionHub::getDroppedCount)
+                    .description("Positions dropped because a subscriber queue was full")
+                    .register(meterRegistry);
+        };
+    }
+
+    @Bean
+    public SmartInitializingSingleton driverEmailFilterMetrics(MeterRegistry meterRegistry, DriverEmailFilter emailFilter) {
+        return () -> {
+            Gauge.builder("driver.email.filter.entries", emailFilter, DriverEmailFilter::getEntries)
+                    .description("Emails added to the duplicate signup filter since it was last built")
+                    .register(meterRegistry);
+            Gauge.builder("driver.email.filter.stale", emailFilter, DriverEmailFilter::getStaleCount)
+                    .description("Deleted or replaced emails still set in the duplicate signup filter")
+                    .register(meterRegistry);
+            FunctionCounter.builder("driver.email.filter.skipped", emailFilter, DriverEmailFilter::getSkippedChecks)
+                    .description("Email checks answered by the filter without querying the drivers table")
+                    .register(meterRegistry);
+        };
+    }
+}
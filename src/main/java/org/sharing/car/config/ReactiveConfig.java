@@ -0,0 +1,149 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sharing.car.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.reactivestreams.Publisher;
+import org.sharing.car.controller.ReactiveDriverHandler;
+import org.sharing.car.mapper.DriverMapper;
+import org.sharing.car.repository.ReactiveDriverRepository;
+import org.sharing.car.service.DriverLocationBuffer;
+import org.sharing.car.service.DriverLocationIndex;
+import org.sharing.car.service.DriverPositionHub;
+import org.sharing.car.service.DriverService;
+import org.sharing.car.util.JsonMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.web.server.Compression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.util.MimeType;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Validator;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Configuration
+@ConditionalOnProperty(name = "driver.reactive.enabled", havingValue = "true")
+public class ReactiveConfig {
+
+    // the connection factory is deliberately not a bean, one would switch off the JDBC DataSource that JPA runs on
+    @Bean(destroyMethod = "close")
+    public ReactiveDriverRepository reactiveDriverRepository(@Value("${driver.reactive.r2dbc-url}") String url,
+                                                             @Value("${spring.datasource.username}") String username,
+                                                             @Value("${spring.datasource.password}") String password) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        return new ReactiveDriverRepository(ConnectionFactories.get(options));
+    }
+
+    @Bean
+    public ReactiveDriverHandler reactiveDriverHandler(ReactiveDriverRepository reactiveDriverRepository, DriverService driverService,
+                                                       DriverMapper driverMapper, DriverLocationIndex locationIndex,
+                                                       DriverLocationBuffer locationBuffer, DriverPositionHub positionHub,
+                                                       Validator validator) {
+        return new ReactiveDriverHandler(reactiveDriverRepository, driverService, driverMapper, locationIndex, locationBuffer,
+                positionHub, validator);
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> reactiveDriverRoutes(ReactiveDriverHandler handler) {
+        return driverRoutes(handler);
+    }
+
+    @Bean
+    public ReactiveDriverServer reactiveDriverServer(RouterFunction<ServerResponse> reactiveDriverRoutes, ObjectMapper objectMapper,
+                                                     @Value("${driver.reactive.host:0.0.0.0}") String host,
+                                                     @Value("${driver.reactive.port:8082}") int port,
+                                                     ServerProperties serverProperties) {
+        // the reactive server shares the servlet container's server.compression.* settings
+        Compression compression = serverProperties.getCompression();
+        return new ReactiveDriverServer(RouterFunctions.toHttpHandler(reactiveDriverRoutes, handlerStrategies(objectMapper)), host, port,
+                compression.getEnabled() ? (int) compression.getMinResponseSize().toBytes() : -1,
+                Arrays.stream(compression.getMimeTypes()).map(MimeType::valueOf).collect(Collectors.toList()));
+    }
+
+    public static HandlerStrategies handlerStrategies(ObjectMapper objectMapper) {
+        return HandlerStrategies.builder()
+                .codecs(configurer -> {
+                    configurer.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    configurer.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                    // given a mapper these codecs fall back to the JSON mime types, so the binary ones are named explicitly
+                    configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(JsonMapper.getSmileMapper(), WebConfig.APPLICATION_SMILE));
+                    configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(JsonMapper.getSmileMapper(), WebConfig.APPLICATION_SMILE));
+                    configurer.customCodecs().register(new CborValueEncoder(JsonMapper.getCborMapper()));
+                    configurer.customCodecs().register(new Jackson2CborDecoder(JsonMapper.getCborMapper(), MediaType.APPLICATION_CBOR));
+                })
+                .build();
+    }
+
+    // Spring's CBOR encoder turns down every publisher, including the single value of a bodyValue response
+    private static final class CborValueEncoder extends Jackson2CborEncoder {
+
+        private CborValueEncoder(ObjectMapper mapper) {
+            super(mapper, MediaType.APPLICATION_CBOR);
+        }
+
+        @Override
+        public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory, ResolvableType elementType,
+                                       MimeType mimeType, Map<String, Object> hints) {
+            if (!(inputStream instanceof Mono)) {
+                return super.encode(inputStream, bufferFactory, elementType, mimeType, hints);
+            }
+            return Mono.from(inputStream).map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints)).flux();
+        }
+    }
+
+    public static RouterFunction<ServerResponse> driverRoutes(ReactiveDriverHandler handler) {
+        return RouterFunctions.route()
+                .path("/drivers", builder -> builder
+                        .GET("/stream", handler::streamDrivers)
+                        .GET("/feed", handler::positionFeed)
+                        .GET("/nearby", handler::findNearbyDrivers)
+                        .GET("/{id}", handler::findDriverById)
+                        .GET("", handler::findAllDrivers)
+                        .POST("", handler::createDriver)
+                        .PUT("/{id}", handler::updateDriver)
+                        .DELETE("/{id}", handler::deleteDriver)
+                        .PATCH("/{id}/location", handler::updateDriverLocation))
+                .filter((request, next) -> Mono.defer(() -> next.handle(request))
+                        .onErrorResume(ex -> handler.handleError(request, ex)))
+                .build();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sharing.car.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeType;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.List;
+
+// Reactor Netty server for the reactive driver API, running next to the servlet container on its own port
+@Slf4j
+public class ReactiveDriverServer implements SmartLifecycle {
+
+    private final HttpHandler httpHandler;
+    private final String host;
+    private final int port;
+    private final int compressionThreshold;
+    private final List<MimeType> compressibleTypes;
+    private volatile DisposableServer server;
+
+    // a negative threshold leaves responses uncompressed, otherwise gzip or deflate as the client accepts for the given types
+    public ReactiveDriverServer(HttpHandler httpHandler, String host, int port, int compressionThreshold, List<MimeType> compressibleTypes) {
+        this.httpHandler = httpHandler;
+        this.host = host;
+        this.port = port;
+        this.compressionThreshold = compressionThreshold;
+        this.compressibleTypes = compressibleTypes;
+    }
+
+    @Override
+    public void start() {
+        HttpServer httpServer = HttpServer.create()
+                .host(host)
+                .port(port);
+        if (compressionThreshold >= 0) {
+            // Reactor Netty checks the threshold against Content-Length and ands it with the predicate
+            httpServer = httpServer.compress(compressionThreshold)
+                    .compress((request, response) -> isCompressible(response.responseHeaders().get(HttpHeaders.CONTENT_TYPE)));
+        }
+        server = httpServer
+                .handle(new ReactorHttpHandlerAdapter(httpHandler))
+                .bindNow();
+        log.info("Reactive driver API started on port {}", server.port());
+    }
+
+    @Override
+    public void stop() {
+        if (server != null) {
+            server.disposeNow(Duration.ofSeconds(10));
+            server = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    // streams are never compressed whatever the configured types, the deflater would hold positions back until its buffer fills
+    boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        MimeType mimeType;
+        try {
+            mimeType = MimeType.valueOf(contentType);
+        } catch (InvalidMimeTypeException e) {
+            return false;
+        }
+        if (mimeType.equalsTypeAndSubtype(MediaType.TEXT_EVENT_STREAM) || mimeType.equalsTypeAndSubtype(MediaType.APPLICATION_NDJSON)) {
+            return false;
+        }
+        return compressibleTypes.stream().anyMatch(type -> type.equalsTypeAndSubtype(mimeType));
+    }
+
+    public int getPort() {
+        return (server == null) ? port : server.port();
+    }
+}
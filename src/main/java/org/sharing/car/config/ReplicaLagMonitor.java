@@ -0,0 +1,75 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+
+// Compares the heartbeat row on the primary with the copy the replica has received, and writes the next beat
+@Slf4j
+public class ReplicaLagMonitor {
+
+    static final String SELECT_BEAT = "select beat from replica_heartbeat where id = 1";
+    static final String UPDATE_BEAT = "update replica_heartbeat set beat = ? where id = 1";
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final long maxLagMs;
+
+    // unknown until the first check, reads stay on the primary until then
+    private volatile long lagMs = -1;
+
+    public ReplicaLagMonitor(DataSource primary, DataSource replica, long maxLagMs) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+        this.maxLagMs = maxLagMs;
+    }
+
+    @Scheduled(fixedDelayString = "${driver.datasource.replica.lag-check-interval-ms:500}")
+    public void check() {
+        try {
+            Timestamp written = primary.queryForObject(SELECT_BEAT, Timestamp.class);
+            Timestamp received = replica.queryForObject(SELECT_BEAT, Timestamp.class);
+            long lag = Math.max(0, written.getTime() - received.getTime());
+            if (lag > maxLagMs && lagMs <= maxLagMs) {
+                log.warn("Replica is {} ms behind the primary, reads fall back to the primary", lag);
+            }
+            lagMs = lag;
+            primary.update(UPDATE_BEAT, new Timestamp(System.currentTimeMillis()));
+        } catch (DataAccessException ex) {
+            if (lagMs != -1) {
+                log.warn("Replica lag check failed, reads fall back to the primary", ex);
+            }
+            lagMs = -1;
+        }
+    }
+
+    public boolean isReplicaUsable() {
+        long lag = lagMs;
+        return lag >= 0 && lag <= maxLagMs;
+    }
+
+    public long getLagMs() {
+        return lagMs;
+    }
+}
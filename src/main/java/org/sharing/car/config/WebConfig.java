@@ -0,0 +1,102 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.config;
+
+import org.sharing.car.util.JsonMapper;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
+    public static final List<MediaType> BODY_TYPES = List.of(MediaType.APPLICATION_JSON, APPLICATION_SMILE, MediaType.APPLICATION_CBOR);
+
+    // Spring adds Smile and CBOR converters on its own mapper when the formats are on the classpath; these use the shared
+    // configuration instead, and sit right after JSON so clients sending */* keep getting JSON
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.removeIf(converter -> converter instanceof MappingJackson2SmileHttpMessageConverter
+                || converter instanceof MappingJackson2CborHttpMessageConverter);
+        int json = converters.size() - 1;
+        for (int i = 0; i < converters.size(); i++) {
+            if (converters.get(i) instanceof MappingJackson2HttpMessageConverter) {
+                json = i;
+                break;
+            }
+        }
+        converters.add(json + 1, new MappingJackson2SmileHttpMessageConverter(JsonMapper.getSmileMapper()));
+        converters.add(json + 2, new MappingJackson2CborHttpMessageConverter(JsonMapper.getCborMapper()));
+    }
+
+    // handlers returning a body get it through the converters, so the Accept header picks its format and shared caches must
+    // key on it; void handlers write a fixed type themselves. Set before the handler runs so a 304 carries it too
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                // asynchronous handlers pass through here again on the redispatch
+                if (handler instanceof HandlerMethod && !((HandlerMethod) handler).isVoid()
+                        && !response.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT)) {
+                    response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+                }
+                return true;
+            }
+        });
+    }
+
+    // the body type the converters pick: Smile or CBOR when the client prefers one, JSON for anything else including */*
+    public static MediaType bodyTypeOf(List<MediaType> accepted) {
+        List<MediaType> sorted = new ArrayList<>(accepted);
+        MediaType.sortBySpecificityAndQuality(sorted);
+        for (MediaType mediaType : sorted) {
+            for (MediaType bodyType : BODY_TYPES) {
+                if (mediaType.includes(bodyType)) {
+                    return bodyType;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    public static MediaType bodyTypeOf(String accept) {
+        try {
+            return WebConfig.bodyTypeOf(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException ex) {
+            // negotiation rejects it with a 406 later on
+            return MediaType.APPLICATION_JSON;
+        }
+    }
+}
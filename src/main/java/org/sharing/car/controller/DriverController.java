@@ -16,44 +16,142 @@
 
 package org.sharing.car.controller;
 
-import org.modelmapper.ModelMapper;
+import org.sharing.car.config.WebConfig;
+import org.sharing.car.dto.DriverBatchResultDTO;
+import org.sharing.car.dto.DriverChangesDTO;
 import org.sharing.car.dto.DriverCreationDTO;
+import org.sharing.car.domainvalue.BoundingBox;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.domainvalue.OnlineStatus;
 import org.sharing.car.dto.DriverDTO;
+import org.sharing.car.dto.DriverFilter;
+import org.sharing.car.dto.DriverImportReportDTO;
+import org.sharing.car.dto.DriverLocationDTO;
+import org.sharing.car.dto.DriverSlice;
+import org.sharing.car.dto.DriverStatusDTO;
 import org.sharing.car.dto.DriverUpdationDTO;
+import org.sharing.car.exception.InvalidConstraintsException;
+import org.sharing.car.mapper.DriverMapper;
+import org.sharing.car.service.DriverImporter;
+import org.sharing.car.service.DriverRequestExecutor;
 import org.sharing.car.service.DriverService;
+import org.sharing.car.util.DriverExportWriter;
+import org.sharing.car.util.DriverFileFormat;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
-@CrossOrigin
+@CrossOrigin(exposedHeaders = DriverController.NEXT_CURSOR_HEADER)
 @RestController
 @RequestMapping("/drivers")
 public class DriverController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     @Autowired
     private DriverService driverService;
 
     @Autowired
-    private ModelMapper mapper;
+    private DriverMapper mapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private DriverRequestExecutor requestExecutor;
+
+    @Autowired
+    private DriverImporter driverImporter;
+
+    @Value("${driver.batch.max-size:1000}")
+    private int maxBatchSize;
 
     @PostMapping
-    public ResponseEntity<DriverDTO> createDriver(@Valid @RequestBody DriverCreationDTO driverCreationRequest) {
+    public ResponseEntity<DriverDTO> createDriver(@Valid @RequestBody DriverCreationDTO driverCreationRequest,
+                                                  @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         DriverDTO driverDTO = DriverCreationDTO.makeDriverDTO(driverCreationRequest);
-        return new ResponseEntity<>(driverService.createDriver(driverDTO), HttpStatus.CREATED);
+        DriverDTO createdDriver = driverService.createDriver(driverDTO);
+        return ResponseEntity.status(HttpStatus.CREATED).eTag(DriverController.etagOf(createdDriver, WebConfig.bodyTypeOf(accept))).body(createdDriver);
     }
 
+    // with the ETag set Spring answers a matching If-None-Match with 304 and no body, a cached driver needs no query at all
     @GetMapping("{id}")
-    public DriverDTO findDriverById(@PathVariable Long id) {
-        return driverService.findDriverById(id);
+    public CompletableFuture<ResponseEntity<DriverDTO>> findDriverById(@PathVariable Long id,
+                                                                       @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        MediaType bodyType = WebConfig.bodyTypeOf(accept);
+        return requestExecutor.submit(() -> {
+            DriverDTO driver = driverService.findDriverById(id);
+            return ResponseEntity.ok().eTag(DriverController.etagOf(driver, bodyType)).body(driver);
+        });
+    }
+
+    @GetMapping("by-email")
+    public CompletableFuture<ResponseEntity<DriverDTO>> findDriverByEmail(@RequestParam("email") String email,
+                                                                          @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        MediaType bodyType = WebConfig.bodyTypeOf(accept);
+        return requestExecutor.submit(() -> {
+            DriverDTO driver = driverService.findDriverByEmail(email);
+            return ResponseEntity.ok().eTag(DriverController.etagOf(driver, bodyType)).body(driver);
+        });
     }
 
     @PutMapping("{id}")
-    public ResponseEntity<DriverDTO> updateDriver(@Valid @RequestBody DriverUpdationDTO driverUpdationDTO, @PathVariable Long id) {
-        return new ResponseEntity<>(driverService.updateDriver(mapper.map(driverUpdationDTO, DriverDTO.class), id), HttpStatus.OK);
+    public ResponseEntity<DriverDTO> updateDriver(@Valid @RequestBody DriverUpdationDTO driverUpdationDTO, @PathVariable Long id,
+                                                  @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                  @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        DriverDTO updatedDriver = driverService.updateDriver(mapper.toDTO(driverUpdationDTO), id, DriverController.versionsOf(ifMatch));
+        return ResponseEntity.ok().eTag(DriverController.etagOf(updatedDriver, WebConfig.bodyTypeOf(accept))).body(updatedDriver);
+    }
+
+    // the version covers profile and status writes, but location reports bypass it and a roster copy is built apart from the
+    // row, so the hash of every field of the body is folded in as well.
+    // Smile and CBOR bodies are other bytes than the JSON one, so their tags carry the subtype; JSON keeps the bare tag
+    static String etagOf(DriverDTO driver, MediaType bodyType) {
+        String suffix = bodyType.equalsTypeAndSubtype(MediaType.APPLICATION_JSON) ? "" : "-" + bodyType.getSubtype();
+        return "\"" + driver.getVersion() + "." + Integer.toHexString(driver.hashCode()) + suffix + "\"";
+    }
+
+    // null when any version will do; If-Match compares strongly, so weak or foreign tags match nothing
+    static Set<Long> versionsOf(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        Set<Long> versions = new HashSet<>();
+        for (String tag : ifMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+                String value = tag.substring(1, tag.length() - 1);
+                int separator = value.indexOf('.');
+                try {
+                    versions.add(Long.parseLong((separator < 0) ? value : value.substring(0, separator)));
+                } catch (NumberFormatException ex) {
+                    // not one of ours, cannot match
+                }
+            }
+        }
+        return versions;
     }
 
     @DeleteMapping("{id}")
@@ -62,11 +160,212 @@ public class DriverController {
     }
 
     @GetMapping
-    public ResponseEntity<List<DriverDTO>> findAllDrivers(@RequestParam(value = "pageNo", defaultValue = "0") int pageNo,
-                                                          @RequestParam(value = "pageSize", defaultValue = "20") int pageSize,
-                                                          @RequestParam(value = "direction", defaultValue = "asc") String direction,
-                                                          @RequestParam(value = "field", defaultValue = "id") String field) {
-        return new ResponseEntity<>(driverService.findAllDrivers(pageNo, pageSize, direction, field), HttpStatus.OK);
+    public CompletableFuture<ResponseEntity<List<DriverDTO>>> findAllDrivers(@RequestParam(value = "pageNo", defaultValue = "0") int pageNo,
+                                                                             @RequestParam(value = "pageSize", defaultValue = "20") int pageSize,
+                                                                             @RequestParam(value = "direction", defaultValue = "asc") String direction,
+                                                                             @RequestParam(value = "field", defaultValue = "id") String field,
+                                                                             @RequestParam(value = "after", required = false) String after,
+                                                                             DriverFilter filter) {
+        if (after == null) {
+            if (filter.isOnlineOnly() && field.equals("id")) {
+                // answered from the in-memory roster, no need to hand off to the lookup pool
+                return CompletableFuture.completedFuture(new ResponseEntity<>(driverService.findDrivers(filter, pageNo, pageSize, direction, field), HttpStatus.OK));
+            }
+            if (!filter.isEmpty()) {
+                return requestExecutor.submit(() -> new ResponseEntity<>(driverService.findDrivers(filter, pageNo, pageSize, direction, field), HttpStatus.OK));
+            }
+            return requestExecutor.submit(() -> new ResponseEntity<>(driverService.findAllDrivers(pageNo, pageSize, direction, field), HttpStatus.OK));
+        }
+        if (!field.equals("id")) {
+            throw new InvalidConstraintsException("Cursor pagination only supports ordering by id, not " + field);
+        }
+        if (filter.isOnlineOnly()) {
+            return CompletableFuture.completedFuture(withNextCursor(driverService.findOnlineDriversAfter(after, pageSize, direction)));
+        }
+        if (!filter.isEmpty()) {
+            throw new InvalidConstraintsException("Cursor pagination only supports the ONLINE status filter, not " + filter);
+        }
+        return requestExecutor.submit(() -> withNextCursor(driverService.findDriversAfter(after, pageSize, direction)));
+    }
+
+    @GetMapping(params = "fields")
+    public CompletableFuture<ResponseEntity<List<Map<String, Object>>>> findDriverFields(@RequestParam(value = "pageNo", defaultValue = "0") int pageNo,
+                                                                                        @RequestParam(value = "pageSize", defaultValue = "20") int pageSize,
+                                                                                        @RequestParam(value = "direction", defaultValue = "asc") String direction,
+                                                                                        @RequestParam(value = "field", defaultValue = "id") String field,
+                                                                                        @RequestParam(value = "after", required = false) String after,
+                                                                                        @RequestParam("fields") List<String> fields,
+                                                                                        DriverFilter filter) {
+        if (after != null) {
+            throw new InvalidConstraintsException("Cursor pagination does not support field projection");
+        }
+        return requestExecutor.submit(() -> new ResponseEntity<>(driverService.findDriverFields(filter, fields, pageNo, pageSize, direction, field), HttpStatus.OK));
+    }
+
+    private static ResponseEntity<List<DriverDTO>> withNextCursor(DriverSlice slice) {
+        HttpHeaders headers = new HttpHeaders();
+        if (slice.getNextCursor() != null) {
+            headers.set(NEXT_CURSOR_HEADER, slice.getNextCursor());
+        }
+        return new ResponseEntity<>(slice.getDrivers(), headers, HttpStatus.OK);
+    }
+
+    @GetMapping("changes")
+    public CompletableFuture<DriverChangesDTO> findDriverChanges(@RequestParam(value = "since", required = false) String since,
+                                                                 @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        return requestExecutor.submit(() -> driverService.findChanges(since, limit));
+    }
+
+    // written on the request thread straight into the response, an export outlives the async request timeout
+    @GetMapping("export")
+    public void exportDrivers(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                              HttpServletResponse response) throws IOException {
+        DriverFileFormat exportFormat = DriverFileFormat.of(format);
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"drivers." + exportFormat.getExtension() + "\"");
+        try (DriverExportWriter writer = DriverExportWriter.create(exportFormat, response.getOutputStream())) {
+            driverService.exportDrivers(writer::write);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    // the body is read as it arrives, send it as application/x-ndjson or text/csv and not as a form
+    @PostMapping("import")
+    public ResponseEntity<DriverImportReportDTO> importDrivers(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                                                               HttpServletRequest request) throws IOException {
+        DriverFileFormat importFormat = DriverFileFormat.of(format);
+        return new ResponseEntity<>(driverImporter.importDrivers(request.getInputStream(), importFormat, null), HttpStatus.OK);
+    }
+
+    @GetMapping("nearby")
+    public CompletableFuture<ResponseEntity<List<DriverDTO>>> findNearbyDrivers(@RequestParam("lat") double latitude,
+                                                                                @RequestParam("lon") double longitude,
+                                                                                @RequestParam(value = "radiusKm", defaultValue = "5") double radiusKm,
+                                                                                @RequestParam(value = "limit", defaultValue = "10") int limit,
+                                                                                @RequestParam(value = "status", defaultValue = "ONLINE") OnlineStatus status) {
+        return requestExecutor.submit(() -> new ResponseEntity<>(driverService.findNearbyDrivers(latitude, longitude, radiusKm, limit, status), HttpStatus.OK));
+    }
+
+    @GetMapping("within")
+    public CompletableFuture<ResponseEntity<List<DriverDTO>>> findDriversInBox(@RequestParam("minLat") double minLatitude,
+                                                                               @RequestParam("minLon") double minLongitude,
+                                                                               @RequestParam("maxLat") double maxLatitude,
+                                                                               @RequestParam("maxLon") double maxLongitude,
+                                                                               @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        BoundingBox box = new BoundingBox(minLatitude, minLongitude, maxLatitude, maxLongitude);
+        return requestExecutor.submit(() -> new ResponseEntity<>(driverService.findDriversInBox(box, limit), HttpStatus.OK));
+    }
+
+    @PatchMapping("{id}/status")
+    public ResponseEntity<DriverDTO> updateDriverStatus(@Valid @RequestBody DriverStatusDTO statusRequest, @PathVariable Long id) {
+        return new ResponseEntity<>(driverService.updateDriverStatus(id, statusRequest.getStatus()), HttpStatus.OK);
+    }
+
+    @PatchMapping("{id}/location")
+    public ResponseEntity<Void> updateDriverLocation(@Valid @RequestBody GeoCoordinate coordinate, @PathVariable Long id) {
+        driverService.updateDriverLocation(id, coordinate);
+        return new ResponseEntity<>(HttpStatus.ACCEPTED);
+    }
+
+    @PatchMapping("location")
+    public ResponseEntity<List<Long>> updateDriverLocations(@RequestBody List<DriverLocationDTO> locations) {
+        checkBatchSize(locations.size());
+        for (DriverLocationDTO location : locations) {
+            String error = violationsOf(location);
+            if (error != null) {
+                throw new InvalidConstraintsException("Invalid location " + location + ": " + error);
+            }
+        }
+        return new ResponseEntity<>(driverService.updateDriverLocations(locations), HttpStatus.ACCEPTED);
+    }
+
+    @PostMapping("batch")
+    public ResponseEntity<List<DriverBatchResultDTO>> createDrivers(@RequestBody List<DriverCreationDTO> driverCreationRequests) {
+        checkBatchSize(driverCreationRequests.size());
+        List<DriverBatchResultDTO> results = new ArrayList<>(Collections.nCopies(driverCreationRequests.size(), null));
+        List<Integer> accepted = new ArrayList<>();
+        List<DriverDTO> driverDTOs = new ArrayList<>();
+        // taken emails, and repeats within the batch, are turned away per row instead of failing the whole insert
+        Set<String> takenEmails = driverService.findRegisteredEmails(driverCreationRequests.stream()
+                .filter(Objects::nonNull).map(DriverCreationDTO::getEmail).collect(Collectors.toList()));
+        for (int i = 0; i < driverCreationRequests.size(); i++) {
+            String error = violationsOf(driverCreationRequests.get(i));
+            if (error != null) {
+                results.set(i, new DriverBatchResultDTO(i, null, HttpStatus.BAD_REQUEST.value(), error, null));
+            } else if (!takenEmails.add(driverCreationRequests.get(i).getEmail())) {
+                results.set(i, new DriverBatchResultDTO(i, null, HttpStatus.CONFLICT.value(),
+                        "Email already registered: " + driverCreationRequests.get(i).getEmail(), null));
+            } else {
+                accepted.add(i);
+                driverDTOs.add(mapper.toDTO(driverCreationRequests.get(i)));
+            }
+        }
+        if (!driverDTOs.isEmpty()) {
+            List<DriverDTO> createdDrivers = driverService.createDrivers(driverDTOs);
+            for (int i = 0; i < accepted.size(); i++) {
+                DriverDTO createdDriver = createdDrivers.get(i);
+                results.set(accepted.get(i), new DriverBatchResultDTO(accepted.get(i), createdDriver.getId(), HttpStatus.CREATED.value(), null, createdDriver));
+            }
+        }
+        return new ResponseEntity<>(results, HttpStatus.OK);
+    }
+
+    @PutMapping("batch")
+    public ResponseEntity<List<DriverBatchResultDTO>> updateDrivers(@RequestBody List<DriverUpdationDTO> driverUpdationRequests) {
+        checkBatchSize(driverUpdationRequests.size());
+        List<DriverBatchResultDTO> results = new ArrayList<>(Collections.nCopies(driverUpdationRequests.size(), null));
+        List<Integer> accepted = new ArrayList<>();
+        List<DriverDTO> driverDTOs = new ArrayList<>();
+        for (int i = 0; i < driverUpdationRequests.size(); i++) {
+            DriverUpdationDTO driverUpdationDTO = driverUpdationRequests.get(i);
+            String error = violationsOf(driverUpdationDTO);
+            if (error != null) {
+                results.set(i, new DriverBatchResultDTO(i, (driverUpdationDTO == null) ? null : driverUpdationDTO.getId(), HttpStatus.BAD_REQUEST.value(), error, null));
+            } else {
+                accepted.add(i);
+                driverDTOs.add(mapper.toDTO(driverUpdationDTO));
+            }
+        }
+        Map<Long, DriverDTO> updatedDrivers = driverDTOs.isEmpty() ? Collections.emptyMap() : driverService.updateDrivers(driverDTOs);
+        for (int i = 0; i < accepted.size(); i++) {
+            Long id = driverDTOs.get(i).getId();
+            DriverDTO updatedDriver = updatedDrivers.get(id);
+            results.set(accepted.get(i), (updatedDriver == null)
+                    ? new DriverBatchResultDTO(accepted.get(i), id, HttpStatus.NOT_FOUND.value(), "Driver not found with ID " + id, null)
+                    : new DriverBatchResultDTO(accepted.get(i), id, HttpStatus.OK.value(), null, updatedDriver));
+        }
+        return new ResponseEntity<>(results, HttpStatus.OK);
+    }
+
+    @DeleteMapping("batch")
+    public ResponseEntity<List<DriverBatchResultDTO>> deleteDrivers(@RequestBody List<Long> ids) {
+        checkBatchSize(ids.size());
+        Set<Long> deleted = driverService.deleteDrivers(ids.stream().filter(id -> id != null).collect(Collectors.toList()));
+        List<DriverBatchResultDTO> results = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            Long id = ids.get(i);
+            results.add(deleted.contains(id)
+                    ? new DriverBatchResultDTO(i, id, HttpStatus.OK.value(), null, null)
+                    : new DriverBatchResultDTO(i, id, HttpStatus.NOT_FOUND.value(), "Driver not found with ID " + id, null));
+        }
+        return new ResponseEntity<>(results, HttpStatus.OK);
+    }
+
+    private void checkBatchSize(int size) {
+        if (size > maxBatchSize) {
+            throw new InvalidConstraintsException("Batch of " + size + " drivers exceeds the limit of " + maxBatchSize);
+        }
+    }
+
+    private String violationsOf(Object request) {
+        if (request == null) {
+            return "Driver must not be empty";
+        }
+        Set<ConstraintViolation<Object>> violations = validator.validate(request);
+        return violations.isEmpty() ? null
+                : violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining(", "));
     }
 
 }
@@ -0,0 +1,220 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sharing.car.controller;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.sharing.car.domainvalue.BoundingBox;
+import org.sharing.car.dto.DriverPositionDTO;
+import org.sharing.car.service.DriverPositionHub;
+import org.sharing.car.util.JsonMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.bind.annotation.*;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Slf4j
+@CrossOrigin
+@RestController
+@RequestMapping("/drivers")
+public class DriverFeedController {
+
+    static final int DRAIN_BATCH = 256;
+
+    private static final byte[] EVENT_PREFIX = "event:position\ndata:".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] EVENT_SUFFIX = "\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final ObjectWriter POSITION_WRITER = JsonMapper.writerFor(DriverPositionDTO.class);
+
+    @Autowired
+    private DriverPositionHub positionHub;
+
+    @Value("${driver.feed.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    // serialises and writes positions off the publishing thread; writes are non-blocking, so a stalled client never holds a thread
+    private final ExecutorService feedExecutor;
+
+    public DriverFeedController(@Value("${driver.feed.threads:8}") int threads) {
+        this.feedExecutor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("driver-feed-"));
+    }
+
+    @GetMapping(value = "feed", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public void subscribe(@RequestParam("minLat") double minLatitude,
+                          @RequestParam("minLon") double minLongitude,
+                          @RequestParam("maxLat") double maxLatitude,
+                          @RequestParam("maxLon") double maxLongitude,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        BoundingBox box = new BoundingBox(minLatitude, minLongitude, maxLatitude, maxLongitude);
+        FeedDelivery delivery = new FeedDelivery();
+        // subscribed before the response is committed, so an invalid box is still answered with 400
+        delivery.subscription = positionHub.subscribe(box, delivery::schedule);
+        try {
+            response.setContentType(MediaType.TEXT_EVENT_STREAM_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            delivery.asyncContext = request.startAsync();
+            delivery.asyncContext.setTimeout(timeoutMs);
+            delivery.asyncContext.addListener(delivery);
+            ServletOutputStream out = response.getOutputStream();
+            out.setWriteListener(delivery);
+            delivery.out = out;
+        } catch (IOException | RuntimeException ex) {
+            // the listeners that would close the subscription may never have been registered
+            delivery.close(ex);
+            throw ex;
+        }
+        // positions published before the stream was ready did not schedule anything
+        delivery.schedule();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        feedExecutor.shutdownNow();
+    }
+
+    private static byte[] encode(List<DriverPositionDTO> positions) throws IOException {
+        ByteArrayOutputStream events = new ByteArrayOutputStream(positions.size() * 128);
+        for (DriverPositionDTO position : positions) {
+            events.write(EVENT_PREFIX);
+            POSITION_WRITER.writeValue(events, position);
+            events.write(EVENT_SUFFIX);
+        }
+        return events.toByteArray();
+    }
+
+    // scheduled stays set from the moment a drain is queued until the queue is empty and the socket took everything,
+    // including while the socket is full, so publishers never queue work for a client that is not reading
+    private final class FeedDelivery implements Runnable, WriteListener, AsyncListener {
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile DriverPositionHub.Subscription subscription;
+        private volatile AsyncContext asyncContext;
+        private volatile ServletOutputStream out;
+
+        void schedule() {
+            if (out != null && scheduled.compareAndSet(false, true)) {
+                execute();
+            }
+        }
+
+        private void execute() {
+            try {
+                feedExecutor.execute(this);
+            } catch (RejectedExecutionException ex) {
+                close(null);
+            }
+        }
+
+        // synchronized only against the extra run onWritePossible may queue, no write in here ever blocks
+        @Override
+        public synchronized void run() {
+            try {
+                while (true) {
+                    // once isReady answers false the container calls onWritePossible when the client has caught up
+                    if (closed.get() || !out.isReady()) {
+                        return;
+                    }
+                    List<DriverPositionDTO> positions = subscription.drain(DRAIN_BATCH);
+                    if (positions.isEmpty()) {
+                        out.flush();
+                        if (!out.isReady()) {
+                            return;
+                        }
+                        break;
+                    }
+                    out.write(encode(positions));
+                }
+            } catch (IOException | RuntimeException ex) {
+                close(ex);
+                return;
+            }
+            scheduled.set(false);
+            // a position published after the last drain found the flag still set, so pick it up here
+            if (!subscription.isEmpty()) {
+                schedule();
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            if (out != null) {
+                execute();
+            }
+        }
+
+        @Override
+        public void onError(Throwable ex) {
+            close(ex);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close(null);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close(event.getThrowable());
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            closed.set(true);
+            subscription.close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+
+        private void close(Throwable ex) {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            if (ex != null) {
+                log.debug("Closing driver feed for {}: {}", subscription.getBox(), ex.getMessage());
+            }
+            subscription.close();
+            if (asyncContext == null) {
+                return;
+            }
+            try {
+                asyncContext.complete();
+            } catch (IllegalStateException completed) {
+                // the container already finished the request
+            }
+        }
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sharing.car.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.sharing.car.config.WebConfig;
+import org.sharing.car.domainvalue.BoundingBox;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.domainvalue.OnlineStatus;
+import org.sharing.car.dto.DriverCreationDTO;
+import org.sharing.car.dto.DriverDTO;
+import org.sharing.car.dto.DriverPositionDTO;
+import org.sharing.car.dto.DriverUpdationDTO;
+import org.sharing.car.exception.DriverNotFoundException;
+import org.sharing.car.exception.InvalidConstraintsException;
+import org.sharing.car.mapper.DriverMapper;
+import org.sharing.car.repository.ReactiveDriverRepository;
+import org.sharing.car.service.DriverLocationBuffer;
+import org.sharing.car.service.DriverLocationIndex;
+import org.sharing.car.service.DriverPositionHub;
+import org.sharing.car.service.DriverService;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+// Reactive variant of DriverController: reads go through R2DBC, writes keep DriverService semantics on boundedElastic
+@Slf4j
+public class ReactiveDriverHandler {
+
+    static final int DRAIN_BATCH = 256;
+
+    private final ReactiveDriverRepository repository;
+    private final DriverService driverService;
+    private final DriverMapper mapper;
+    private final DriverLocationIndex locationIndex;
+    private final DriverLocationBuffer locationBuffer;
+    private final DriverPositionHub positionHub;
+    private final Validator validator;
+
+    public ReactiveDriverHandler(ReactiveDriverRepository repository, DriverService driverService, DriverMapper mapper,
+                                 DriverLocationIndex locationIndex, DriverLocationBuffer locationBuffer,
+                                 DriverPositionHub positionHub, Validator validator) {
+        this.repository = repository;
+        this.driverService = driverService;
+        this.mapper = mapper;
+        this.locationIndex = locationIndex;
+        this.locationBuffer = locationBuffer;
+        this.positionHub = positionHub;
+        this.validator = validator;
+    }
+
+    public Mono<ServerResponse> createDriver(ServerRequest request) {
+        return request.bodyToMono(DriverCreationDTO.class)
+                .switchIfEmpty(Mono.error(() -> new InvalidConstraintsException("Driver must not be empty")))
+                .map(this::validated)
+                .flatMap(driverCreationDTO -> blocking(() -> driverService.createDriver(DriverCreationDTO.makeDriverDTO(driverCreationDTO))))
+                .flatMap(driver -> ServerResponse.status(HttpStatus.CREATED).varyBy(HttpHeaders.ACCEPT).contentType(bodyTypeOf(request)).bodyValue(driver));
+    }
+
+    public Mono<ServerResponse> findDriverById(ServerRequest request) {
+        Long id = idOf(request);
+        return repository.findById(id)
+                .map(this::withBufferedLocation)
+                .switchIfEmpty(Mono.error(() -> new DriverNotFoundException("Driver not found with ID " + id)))
+                .flatMap(driver -> ServerResponse.ok().varyBy(HttpHeaders.ACCEPT).contentType(bodyTypeOf(request)).bodyValue(driver));
+    }
+
+    public Mono<ServerResponse> updateDriver(ServerRequest request) {
+        Long id = idOf(request);
+        return request.bodyToMono(DriverUpdationDTO.class)
+                .switchIfEmpty(Mono.error(() -> new InvalidConstraintsException("Driver must not be empty")))
+                .map(this::validated)
+                .flatMap(driverUpdationDTO -> blocking(() -> driverService.updateDriver(mapper.toDTO(driverUpdationDTO), id)))
+                .flatMap(driver -> ServerResponse.ok().varyBy(HttpHeaders.ACCEPT).contentType(bodyTypeOf(request)).bodyValue(driver));
+    }
+
+    public Mono<ServerResponse> deleteDriver(ServerRequest request) {
+        Long id = idOf(request);
+        return blocking(() -> {
+            driverService.deleteDriver(id);
+            return id;
+        }).flatMap(deleted -> ServerResponse.ok().build());
+    }
+
+    public Mono<ServerResponse> findAllDrivers(ServerRequest request) {
+        int pageNo = intParam(request, "pageNo", 0);
+        int pageSize = intParam(request, "pageSize", 20);
+        Sort.Direction direction = directionOf(request);
+        String field = request.queryParam("field").orElse("id");
+        if (pageNo < 0 || pageSize < 1) {
+            throw new InvalidConstraintsException("Invalid page " + pageNo + " of size " + pageSize);
+        }
+        // a page is bounded, so it is collected and errors still map to a status before anything is written
+        return repository.findAll(pageNo, pageSize, direction, field)
+                .map(this::withBufferedLocation)
+                .collectList()
+                .flatMap(drivers -> ServerResponse.ok().varyBy(HttpHeaders.ACCEPT).contentType(bodyTypeOf(request)).bodyValue(drivers));
+    }
+
+    public Mono<ServerResponse> streamDrivers(ServerRequest request) {
+        Sort.Direction direction = directionOf(request);
+        Flux<DriverDTO> drivers = repository.streamAll(direction).map(this::withBufferedLocation);
+        MediaType mediaType = request.headers().accept().contains(MediaType.TEXT_EVENT_STREAM)
+                ? MediaType.TEXT_EVENT_STREAM : MediaType.APPLICATION_NDJSON;
+        return ServerResponse.ok().varyBy(HttpHeaders.ACCEPT).contentType(mediaType).body(drivers, DriverDTO.class);
+    }
+
+    public Mono<ServerResponse> findNearbyDrivers(ServerRequest request) {
+        double latitude = doubleParam(request, "lat", null);
+        double longitude = doubleParam(request, "lon", null);
+        double radiusKm = doubleParam(request, "radiusKm", 5d);
+        int limit = intParam(request, "limit", 10);
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw new InvalidConstraintsException("Invalid coordinate " + latitude + ", " + longitude);
+        }
+        if (radiusKm <= 0 || limit <= 0) {
+            throw new InvalidConstraintsException("Invalid radius " + radiusKm + " or limit " + limit);
+        }
+        List<DriverLocationIndex.Neighbour> neighbours = locationIndex.findNearest(latitude, longitude, radiusKm, limit);
+        return repository.findAllById(neighbours.stream().map(DriverLocationIndex.Neighbour::getDriverId).collect(Collectors.toList()))
+                .filter(driver -> OnlineStatus.ONLINE.name().equals(driver.getStatus()))
+                .collectMap(DriverDTO::getId)
+                .map(drivers -> neighbours.stream().map(neighbour -> drivers.get(neighbour.getDriverId()))
+                        .filter(Objects::nonNull).collect(Collectors.toList()))
+                .flatMap(drivers -> ServerResponse.ok().varyBy(HttpHeaders.ACCEPT).contentType(bodyTypeOf(request)).bodyValue(drivers));
+    }
+
+    public Mono<ServerResponse> updateDriverLocation(ServerRequest request) {
+        Long id = idOf(request);
+        return request.bodyToMono(GeoCoordinate.class)
+                .switchIfEmpty(Mono.error(() -> new InvalidConstraintsException("Coordinate must not be empty")))
+                .map(this::validated)
+                .flatMap(coordinate -> blocking(() -> {
+                    driverService.updateDriverLocation(id, coordinate);
+                    return id;
+                }))
+                .flatMap(updated -> ServerResponse.accepted().build());
+    }
+
+    public Mono<ServerResponse> positionFeed(ServerRequest request) {
+        BoundingBox box = new BoundingBox(doubleParam(request, "minLat", null), doubleParam(request, "minLon", null),
+                doubleParam(request, "maxLat", null), doubleParam(request, "maxLon", null));
+        if (!box.isValid()) {
+            throw new InvalidConstraintsException("Invalid bounding box " + box);
+        }
+        Flux<DriverPositionDTO> positions = Flux.create(sink -> {
+            AtomicInteger wip = new AtomicInteger();
+            DriverPositionHub.Subscription[] subscription = new DriverPositionHub.Subscription[1];
+            Runnable drain = () -> drain(subscription[0], sink, wip);
+            subscription[0] = positionHub.subscribe(box, drain);
+            sink.onRequest(requested -> drain.run());
+            sink.onDispose(subscription[0]::close);
+        });
+        // the opening comment commits the response headers before the first position arrives
+        Flux<ServerSentEvent<DriverPositionDTO>> events = Flux.concat(
+                Mono.just(ServerSentEvent.<DriverPositionDTO>builder().comment("subscribed").build()),
+                positions.map(position -> ServerSentEvent.builder(position).event("position").build()));
+        return ServerResponse.ok().contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(events, new ParameterizedTypeReference<ServerSentEvent<DriverPositionDTO>>() {
+                });
+    }
+
+    // emits only what the client asked for, anything beyond stays conflated in the subscription
+    private static void drain(DriverPositionHub.Subscription subscription, FluxSink<DriverPositionDTO> sink, AtomicInteger wip) {
+        if (subscription == null || wip.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            long requested;
+            while ((requested = sink.requestedFromDownstream()) > 0 && !sink.isCancelled()) {
+                List<DriverPositionDTO> positions = subscription.drain((int) Math.min(requested, DRAIN_BATCH));
+                if (positions.isEmpty()) {
+                    break;
+                }
+                positions.forEach(sink::next);
+            }
+        } while (wip.decrementAndGet() != 0);
+    }
+
+    public Mono<ServerResponse> handleError(ServerRequest request, Throwable ex) {
+        HttpStatus status = statusOf(ex);
+        if (status.is5xxServerError()) {
+            log.error("ReactiveDriverHandler: {} {} failed", request.method(), request.path(), ex);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("timestamp", ZonedDateTime.now());
+        body.put("status", status.value());
+        body.put("error", status.getReasonPhrase());
+        body.put("path", request.path());
+        return ServerResponse.status(status).contentType(MediaType.APPLICATION_JSON).bodyValue(body);
+    }
+
+    private static HttpStatus statusOf(Throwable ex) {
+        if (ex instanceof ResponseStatusException) {
+            return ((ResponseStatusException) ex).getStatus();
+        }
+        ResponseStatus responseStatus = AnnotatedElementUtils.findMergedAnnotation(ex.getClass(), ResponseStatus.class);
+        return (responseStatus == null) ? HttpStatus.INTERNAL_SERVER_ERROR : responseStatus.code();
+    }
+
+    // DriverService is JPA backed, so its calls must stay off the event loop
+    private static <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private DriverDTO withBufferedLocation(DriverDTO driverDTO) {
+        return locationBuffer.get(driverDTO.getId()).map(driverDTO::withCoordinate).orElse(driverDTO);
+    }
+
+    private <T> T validated(T body) {
+        Set<ConstraintViolation<T>> violations = validator.validate(body);
+        if (!violations.isEmpty()) {
+            throw new InvalidConstraintsException(violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining(", ")));
+        }
+        return body;
+    }
+
+    // the same choice the servlet API's converters make
+    static MediaType bodyTypeOf(ServerRequest request) {
+        return WebConfig.bodyTypeOf(request.headers().accept());
+    }
+
+    private static Long idOf(ServerRequest request) {
+        try {
+            return Long.valueOf(request.pathVariable("id"));
+        } catch (NumberFormatException ex) {
+            throw new InvalidConstraintsException("Invalid driver id " + request.pathVariable("id"));
+        }
+    }
+
+    private static Sort.Direction directionOf(ServerRequest request) {
+        String direction = request.queryParam("direction").orElse("asc");
+        return Sort.Direction.fromOptionalString(direction)
+                .orElseThrow(() -> new InvalidConstraintsException("Invalid Direction value " + direction));
+    }
+
+    private static int intParam(ServerRequest request, String name, int defaultValue) {
+        String value = request.queryParam(name).orElse(null);
+        try {
+            return (value == null) ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new InvalidConstraintsException("Invalid " + name + " " + value);
+        }
+    }
+
+    private static double doubleParam(ServerRequest request, String name, Double defaultValue) {
+        String value = request.queryParam(name).orElse(null);
+        if (value == null && defaultValue == null) {
+            throw new InvalidConstraintsException("Missing " + name);
+        }
+        try {
+            return (value == null) ? defaultValue : Double.parseDouble(value);
+        } catch (NumberFormatException ex) {
+            throw new InvalidConstraintsException("Invalid " + name + " " + value);
+        }
+    }
+}
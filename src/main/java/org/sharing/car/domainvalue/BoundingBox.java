@@ -0,0 +1,49 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sharing.car.domainvalue;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+// minLongitude greater than maxLongitude describes a box crossing the antimeridian
+@Getter
+@ToString
+@AllArgsConstructor
+public class BoundingBox {
+
+    private final double minLatitude;
+    private final double minLongitude;
+    private final double maxLatitude;
+    private final double maxLongitude;
+
+    public boolean isValid() {
+        return minLatitude >= -90 && maxLatitude <= 90 && minLatitude <= maxLatitude
+                && minLongitude >= -180 && minLongitude <= 180 && maxLongitude >= -180 && maxLongitude <= 180;
+    }
+
+    public boolean contains(GeoCoordinate coordinate) {
+        double latitude = coordinate.getLatitude();
+        double longitude = coordinate.getLongitude();
+        if (latitude < minLatitude || latitude > maxLatitude) {
+            return false;
+        }
+        return (minLongitude <= maxLongitude)
+                ? longitude >= minLongitude && longitude <= maxLongitude
+                : longitude >= minLongitude || longitude <= maxLongitude;
+    }
+}
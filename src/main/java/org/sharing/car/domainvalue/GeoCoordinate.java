@@ -1,48 +1,57 @@
 package org.sharing.car.domainvalue;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import lombok.Getter;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import org.springframework.data.geo.Point;
 
 import javax.persistence.Column;
 import javax.persistence.Embeddable;
-import javax.persistence.Transient;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 
 @Embeddable
 public class GeoCoordinate {
 
-    @Getter
     @Min(value = -90, message = "latitude is lower than -90")
     @Max(value = 90, message = "latitude is higher than 90")
-    @Transient
+    @Column(name = "latitude")
     private double latitude;
 
-    @Getter
     @Min(value = -180, message = "longitude is lower than -180")
     @Max(value = 180, message = "longitude is lower than 180")
-    @Transient
+    @Column(name = "longitude")
     private double longitude;
 
-    @JsonIgnore
-    @Column(name = "coordinate")
-    private Point point = new Point(this.latitude, this.longitude);
-
     private GeoCoordinate() {
     }
 
-    public GeoCoordinate(double latitude, double longitude) {
+    @JsonCreator
+    public GeoCoordinate(@JsonProperty("latitude") double latitude, @JsonProperty("longitude") double longitude) {
         this.latitude = latitude;
         this.longitude = longitude;
-        this.point = new Point(latitude, longitude);
+    }
+
+    public double getLatitude() {
+        return this.latitude;
+    }
+
+    public double getLongitude() {
+        return this.longitude;
+    }
+
+    @JsonIgnore
+    public Point getPoint() {
+        return new Point(this.latitude, this.longitude);
     }
 
     @Override
     public int hashCode() {
         final int prime = 31;
-        int result = 1;
-        result = prime * result + ((this.point == null) ? 0 : this.point.hashCode());
+        long bits = Double.doubleToLongBits(this.latitude);
+        int result = prime + (int) (bits ^ (bits >>> 32));
+        bits = Double.doubleToLongBits(this.longitude);
+        result = prime * result + (int) (bits ^ (bits >>> 32));
         return result;
     }
 
@@ -59,20 +68,14 @@ public class GeoCoordinate {
             return false;
         }
         final GeoCoordinate other = (GeoCoordinate) obj;
-        if (this.point == null) {
-            if (other.point != null) {
-                return false;
-            }
-        } else if (!this.point.equals(other.point)) {
-            return false;
-        }
-        return true;
+        return Double.doubleToLongBits(this.latitude) == Double.doubleToLongBits(other.latitude)
+                && Double.doubleToLongBits(this.longitude) == Double.doubleToLongBits(other.longitude);
     }
 
 
     @Override
     public String toString() {
-        return this.point.toString();
+        return getPoint().toString();
     }
 
 }
@@ -20,12 +20,12 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import org.sharing.car.domainvalue.GeoCoordinate;
 import org.sharing.car.domainvalue.OnlineStatus;
+import org.sharing.car.validation.DriverAge;
+import org.sharing.car.validation.ValidEmail;
 
 import javax.validation.Valid;
-import javax.validation.constraints.Email;
-import javax.validation.constraints.Max;
-import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
 
 @Data
 @AllArgsConstructor
@@ -37,14 +37,14 @@ public class DriverCreationDTO {
     @NotBlank(message = "Last Name must not be empty")
     private String lastName;
 
-    @Email(message = "Email must not be empty")
+    @NotNull(message = "Email must not be empty")
+    @ValidEmail
     private String email;
 
     @NotBlank(message = "Password must not be empty")
     private String password;
 
-    @Min(value = 15, message = "Age must be greater than or equal to  15")
-    @Max(value = 120, message = "Age must be less than 120")
+    @DriverAge
     private int age;
 
     @Valid
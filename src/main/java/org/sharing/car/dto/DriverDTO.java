@@ -20,6 +20,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.With;
 import org.sharing.car.domainvalue.GeoCoordinate;
 
 import java.io.Serializable;
@@ -35,6 +36,15 @@ public class DriverDTO implements Serializable {
     private String email;
     private String password;
     private int age;
+    @With
     private GeoCoordinate coordinate;
+    @With
     private String status;
+    @With
+    private Long version;
+
+    public DriverDTO(Long id, String firstName, String lastName, String email, String password, int age,
+                     GeoCoordinate coordinate, String status) {
+        this(id, firstName, lastName, email, password, age, coordinate, status, null);
+    }
 }
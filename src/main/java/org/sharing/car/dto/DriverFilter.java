@@ -0,0 +1,56 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.sharing.car.domainvalue.OnlineStatus;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.ZonedDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DriverFilter {
+
+    private OnlineStatus status;
+
+    private Integer minAge;
+
+    private Integer maxAge;
+
+    // prefix of the first or last name, case insensitive
+    private String name;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private ZonedDateTime updatedSince;
+
+    public boolean isEmpty() {
+        return status == null && isUnfilteredBeyondStatus();
+    }
+
+    public boolean isOnlineOnly() {
+        return status == OnlineStatus.ONLINE && isUnfilteredBeyondStatus();
+    }
+
+    private boolean isUnfilteredBeyondStatus() {
+        return minAge == null && maxAge == null && (name == null || name.isBlank()) && updatedSince == null;
+    }
+}
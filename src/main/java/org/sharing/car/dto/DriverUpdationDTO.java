@@ -22,6 +22,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.sharing.car.domainvalue.GeoCoordinate;
 import org.sharing.car.domainvalue.OnlineStatus;
+import org.sharing.car.validation.DriverAge;
+import org.sharing.car.validation.ValidEmail;
 
 import javax.persistence.Id;
 import javax.validation.Valid;
@@ -42,17 +44,14 @@ public class DriverUpdationDTO {
     @NotBlank(message = "Last Name must not be empty")
     private String lastName;
 
-    @Email(message = "Email must not be empty",
-            regexp = "(?:[a-z0-9!#$%&'*+/=?^_`{|}~-]+(?:\\.[a-z0-9!#$%&'*+/=?^_`{|}~-]+)*|\"(?:[\\x01-\\x08\\x0b\\x0c\\x0e-\\x1f\\x21\\x23-\\x5b\\x5d-\\x7f]|\\\\[\\x01-\\x09\\x0b\\x0c\\x0e-\\x7f])*\")@" +
-                    "(?:(?:[a-z0-9](?:[a-z0-9-]*[a-z0-9])?\\.)+[a-z0-9](?:[a-z0-9-]*[a-z0-9])?|\\[(?:(?:25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)\\.){3}(?:25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?|[a-z0-9-]*[a-z0-9]" +
-                    ":(?:[\\x01-\\x08\\x0b\\x0c\\x0e-\\x1f\\x21-\\x5a\\x53-\\x7f]|\\\\[\\x01-\\x09\\x0b\\x0c\\x0e-\\x7f])+)\\])")
+    @NotNull(message = "Email must not be empty")
+    @ValidEmail
     private String email;
 
     @NotBlank(message = "Password must not be empty")
     private String password;
 
-    @Min(value = 15, message = "Age must be greater than or equal to  15")
-    @Max(value = 120, message = "Age must be less than 120")
+    @DriverAge
     private int age;
 
     @Valid
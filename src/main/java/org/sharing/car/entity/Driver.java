@@ -29,13 +29,20 @@ import java.time.ZonedDateTime;
 
 
 @Entity
-@Table(name = "drivers")
+@Table(name = "drivers", indexes = {
+        @Index(name = "idx_drivers_location", columnList = "latitude, longitude"),
+        @Index(name = "idx_drivers_status", columnList = "status"),
+        @Index(name = "idx_drivers_updated", columnList = "updated_date, id")
+}, uniqueConstraints = @UniqueConstraint(name = Driver.EMAIL_CONSTRAINT, columnNames = "email"))
 public class Driver implements Serializable {
 
+    public static final String EMAIL_CONSTRAINT = "uk_drivers_email";
+
     @Getter
     @Setter
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "driver_sequence")
+    @SequenceGenerator(name = "driver_sequence", sequenceName = "driver_sequence", allocationSize = 50)
     private Long id;
 
     @Getter
@@ -73,6 +80,12 @@ public class Driver implements Serializable {
     @Column(nullable = false)
     private OnlineStatus status;
 
+    // bumped on every profile or status write; location reports deliberately leave it alone
+    @Getter
+    @Version
+    @Column(name = "version", nullable = false)
+    private long version;
+
     @Getter
     @Setter
     @Column(name = "created_date", nullable = false)
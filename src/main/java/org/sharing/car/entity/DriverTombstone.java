@@ -0,0 +1,68 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.entity;
+
+import lombok.Getter;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.ZonedDateTime;
+
+// marks a deleted driver so delta sync clients learn about the removal
+@Entity
+@Table(name = "driver_tombstones", indexes = @Index(name = "idx_driver_tombstones_deleted", columnList = "deleted_date, driver_id"))
+public class DriverTombstone implements Persistable<Long>, Serializable {
+
+    @Getter
+    @Id
+    @Column(name = "driver_id")
+    private Long driverId;
+
+    @Getter
+    @Column(name = "deleted_date", nullable = false)
+    private ZonedDateTime deletedDate;
+
+    // driver ids are assigned, without this save() would merge and select every tombstone before inserting it
+    @Transient
+    private boolean fresh = true;
+
+    private DriverTombstone() {
+    }
+
+    public DriverTombstone(Long driverId, ZonedDateTime deletedDate) {
+        this.driverId = driverId;
+        this.deletedDate = deletedDate;
+    }
+
+    @Override
+    public Long getId() {
+        return driverId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return fresh;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markStored() {
+        fresh = false;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.mapper;
+
+import org.sharing.car.domainvalue.OnlineStatus;
+import org.sharing.car.dto.DriverCreationDTO;
+import org.sharing.car.dto.DriverDTO;
+import org.sharing.car.dto.DriverUpdationDTO;
+import org.sharing.car.entity.Driver;
+import org.sharing.car.exception.InvalidConstraintsException;
+
+public class DriverMapper {
+
+    // the password is write-only: no driver read from the table carries it, whether it is served from the roster, the cache
+    // or the database
+    public DriverDTO toDTO(Driver driver) {
+        if (driver == null) {
+            return null;
+        }
+        return new DriverDTO(driver.getId(), driver.getFirstName(), driver.getLastName(), driver.getEmail(),
+                null, driver.getAge(), driver.getCoordinate(),
+                (driver.getStatus() == null) ? null : driver.getStatus().name(), driver.getVersion());
+    }
+
+    public DriverDTO toDTO(DriverCreationDTO driverCreationDTO) {
+        return (driverCreationDTO == null) ? null : DriverCreationDTO.makeDriverDTO(driverCreationDTO);
+    }
+
+    public DriverDTO toDTO(DriverUpdationDTO driverUpdationDTO) {
+        if (driverUpdationDTO == null) {
+            return null;
+        }
+        return new DriverDTO(driverUpdationDTO.getId(), driverUpdationDTO.getFirstName(), driverUpdationDTO.getLastName(),
+                driverUpdationDTO.getEmail(), driverUpdationDTO.getPassword(), driverUpdationDTO.getAge(),
+                driverUpdationDTO.getCoordinate(),
+                (driverUpdationDTO.getStatus() == null) ? null : driverUpdationDTO.getStatus().name());
+    }
+
+    public Driver toEntity(DriverDTO driverDTO) {
+        if (driverDTO == null) {
+            return null;
+        }
+        Driver driver = new Driver(driverDTO.getFirstName(), driverDTO.getLastName(), driverDTO.getEmail(),
+                driverDTO.getPassword(), driverDTO.getAge(), driverDTO.getCoordinate(), toStatus(driverDTO.getStatus()));
+        driver.setId(driverDTO.getId());
+        return driver;
+    }
+
+    public void copyToEntity(DriverDTO driverDTO, Driver driver) {
+        driver.setFirstName(driverDTO.getFirstName());
+        driver.setLastName(driverDTO.getLastName());
+        driver.setEmail(driverDTO.getEmail());
+        driver.setPassword(driverDTO.getPassword());
+        driver.setAge(driverDTO.getAge());
+        driver.setCoordinate(driverDTO.getCoordinate());
+        driver.setStatus(toStatus(driverDTO.getStatus()));
+    }
+
+    private static OnlineStatus toStatus(String status) {
+        if (status == null) {
+            return null;
+        }
+        switch (status) {
+            case "ONLINE":
+                return OnlineStatus.ONLINE;
+            case "OFFLINE":
+                return OnlineStatus.OFFLINE;
+            default:
+                throw new InvalidConstraintsException("Invalid status value " + status);
+        }
+    }
+}
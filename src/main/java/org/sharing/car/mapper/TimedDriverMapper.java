@@ -0,0 +1,64 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.mapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.sharing.car.dto.DriverCreationDTO;
+import org.sharing.car.dto.DriverDTO;
+import org.sharing.car.dto.DriverUpdationDTO;
+import org.sharing.car.entity.Driver;
+
+// Records mapping time under driver.mapping so it can be told apart from repository time
+public class TimedDriverMapper extends DriverMapper {
+
+    static final String TIMER = "driver.mapping";
+
+    private final Timer toDTOTimer;
+    private final Timer toEntityTimer;
+
+    public TimedDriverMapper(MeterRegistry meterRegistry) {
+        this.toDTOTimer = Timer.builder(TIMER).tag("target", "dto").register(meterRegistry);
+        this.toEntityTimer = Timer.builder(TIMER).tag("target", "entity").register(meterRegistry);
+    }
+
+    @Override
+    public DriverDTO toDTO(Driver driver) {
+        return toDTOTimer.record(() -> super.toDTO(driver));
+    }
+
+    @Override
+    public DriverDTO toDTO(DriverCreationDTO driverCreationDTO) {
+        return toDTOTimer.record(() -> super.toDTO(driverCreationDTO));
+    }
+
+    @Override
+    public DriverDTO toDTO(DriverUpdationDTO driverUpdationDTO) {
+        return toDTOTimer.record(() -> super.toDTO(driverUpdationDTO));
+    }
+
+    @Override
+    public Driver toEntity(DriverDTO driverDTO) {
+        return toEntityTimer.record(() -> super.toEntity(driverDTO));
+    }
+
+    @Override
+    public void copyToEntity(DriverDTO driverDTO, Driver driver) {
+        toEntityTimer.record(() -> super.copyToEntity(driverDTO, driver));
+    }
+}
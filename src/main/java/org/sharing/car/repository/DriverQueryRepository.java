@@ -0,0 +1,43 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.repository;
+
+import org.sharing.car.entity.Driver;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+public interface DriverQueryRepository {
+
+    // password is deliberately not projectable
+    Set<String> PROJECTABLE_FIELDS = Set.of("id", "firstName", "lastName", "email", "age", "coordinate", "status", "version");
+
+    // a page of matching drivers without the count query a Page would need
+    List<Driver> findMatching(Specification<Driver> specification, Pageable pageable);
+
+    // one row per driver holding id plus the requested fields, in request order
+    List<Map<String, Object>> findFields(Specification<Driver> specification, Collection<String> fields, Pageable pageable);
+
+    // every driver in id order through a forward-only cursor, entities are detached as the stream hands them out; close it when done
+    Stream<Driver> streamAll(int fetchSize);
+}
@@ -0,0 +1,133 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.repository;
+
+import org.hibernate.jpa.QueryHints;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.domainvalue.GeoCoordinate_;
+import org.sharing.car.entity.Driver;
+import org.sharing.car.entity.Driver_;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class DriverQueryRepositoryImpl implements DriverQueryRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Driver> findMatching(Specification<Driver> specification, Pageable pageable) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Driver> query = builder.createQuery(Driver.class);
+        Root<Driver> root = query.from(Driver.class);
+        query.select(root);
+        restrict(query, root, builder, specification, pageable);
+        return page(entityManager.createQuery(query), pageable).getResultList();
+    }
+
+    @Override
+    public List<Map<String, Object>> findFields(Specification<Driver> specification, Collection<String> fields, Pageable pageable) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<Driver> root = query.from(Driver.class);
+        List<Selection<?>> selections = new ArrayList<>();
+        selections.add(root.get(Driver_.id).alias("id"));
+        for (String field : fields) {
+            if (!PROJECTABLE_FIELDS.contains(field)) {
+                throw new IllegalArgumentException("Field " + field + " cannot be projected");
+            }
+            if (field.equals("coordinate")) {
+                Path<GeoCoordinate> coordinate = root.get(Driver_.coordinate);
+                selections.add(coordinate.get(GeoCoordinate_.latitude).alias("latitude"));
+                selections.add(coordinate.get(GeoCoordinate_.longitude).alias("longitude"));
+            } else if (!field.equals("id")) {
+                selections.add(root.get(field).alias(field));
+            }
+        }
+        query.multiselect(selections);
+        restrict(query, root, builder, specification, pageable);
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Tuple tuple : page(entityManager.createQuery(query), pageable).getResultList()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", tuple.get("id"));
+            for (String field : fields) {
+                if (field.equals("coordinate")) {
+                    Double latitude = tuple.get("latitude", Double.class);
+                    Double longitude = tuple.get("longitude", Double.class);
+                    row.put(field, (latitude == null || longitude == null) ? null : new GeoCoordinate(latitude, longitude));
+                } else if (!field.equals("id")) {
+                    row.put(field, tuple.get(field));
+                }
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Override
+    public Stream<Driver> streamAll(int fetchSize) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Driver> query = builder.createQuery(Driver.class);
+        Root<Driver> root = query.from(Driver.class);
+        query.select(root).orderBy(builder.asc(root.get(Driver_.id)));
+        // read-only entities skip the dirty checking snapshot, detaching keeps the persistence context from growing with the table
+        return entityManager.createQuery(query)
+                .setHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .getResultStream()
+                .peek(entityManager::detach);
+    }
+
+    private static void restrict(CriteriaQuery<?> query, Root<Driver> root, CriteriaBuilder builder,
+                                 Specification<Driver> specification, Pageable pageable) {
+        Predicate predicate = (specification == null) ? null : specification.toPredicate(root, query, builder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (pageable.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, builder));
+        }
+    }
+
+    private static <T> TypedQuery<T> page(TypedQuery<T> query, Pageable pageable) {
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+        return query;
+    }
+}
@@ -16,8 +16,81 @@
 
 package org.sharing.car.repository;
 
+import org.sharing.car.domainvalue.OnlineStatus;
 import org.sharing.car.entity.Driver;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-public interface DriverRepository extends JpaRepository<Driver, Long> {
+import javax.persistence.QueryHint;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface DriverRepository extends JpaRepository<Driver, Long>, DriverQueryRepository {
+
+    // great-circle distance in km between the row and (:lat, :lon), least() guards asin against rounding above 1
+    String DISTANCE_KM = "6371.0088 * 2 * asin(least(1, sqrt(power(sin(radians(d.latitude - :lat) / 2), 2)"
+            + " + cos(radians(:lat)) * cos(radians(d.latitude)) * power(sin(radians(d.longitude - :lon) / 2), 2))))";
+
+    List<Driver> findByStatus(OnlineStatus status);
+
+    Slice<Driver> findAllBy(Pageable pageable);
+
+    Slice<Driver> findByIdGreaterThan(Long id, Pageable pageable);
+
+    Slice<Driver> findByIdLessThan(Long id, Pageable pageable);
+
+    Optional<Driver> findByEmail(String email);
+
+    boolean existsByEmail(String email);
+
+    @Query("select d.email from Driver d where d.email in :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    @QueryHints({@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true")})
+    @Query("select d.email from Driver d")
+    Stream<String> streamAllEmails();
+
+    @Query("select d.id from Driver d where d.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    // keyset over (updated_date, id), served by idx_drivers_updated
+    @Query("select d from Driver d where (d.updatedDate > :since or (d.updatedDate = :since and d.id > :lastId))"
+            + " and d.updatedDate <= :until order by d.updatedDate, d.id")
+    List<Driver> findChangedSince(@Param("since") ZonedDateTime since, @Param("lastId") Long lastId,
+                                  @Param("until") ZonedDateTime until, Pageable pageable);
+
+    @Modifying(clearAutomatically = true)
+    @Query("update Driver d set d.status = :status, d.updatedDate = :updatedDate, d.version = d.version + 1 where d.id = :id")
+    int updateStatus(@Param("id") Long id, @Param("status") OnlineStatus status, @Param("updatedDate") ZonedDateTime updatedDate);
+
+    @Query("select d.version from Driver d where d.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Query("select d from Driver d where d.coordinate.latitude between :minLat and :maxLat"
+            + " and d.coordinate.longitude between :minLon and :maxLon")
+    Slice<Driver> findInBoundingBox(@Param("minLat") double minLatitude, @Param("minLon") double minLongitude,
+                                    @Param("maxLat") double maxLatitude, @Param("maxLon") double maxLongitude, Pageable pageable);
+
+    @Query("select d from Driver d where d.coordinate.latitude between :minLat and :maxLat"
+            + " and (d.coordinate.longitude >= :minLon or d.coordinate.longitude <= :maxLon)")
+    Slice<Driver> findInBoundingBoxAcrossAntimeridian(@Param("minLat") double minLatitude, @Param("minLon") double minLongitude,
+                                                      @Param("maxLat") double maxLatitude, @Param("maxLon") double maxLongitude, Pageable pageable);
+
+    // the latitude/longitude band lets idx_drivers_location narrow the rows before the exact distance is computed
+    @Query(value = "select d.* from drivers d where d.status = :status"
+            + " and d.latitude between :minLat and :maxLat and d.longitude between :minLon and :maxLon"
+            + " and " + DISTANCE_KM + " <= :radiusKm order by " + DISTANCE_KM + " limit :limit", nativeQuery = true)
+    List<Driver> findWithinRadius(@Param("lat") double latitude, @Param("lon") double longitude, @Param("radiusKm") double radiusKm,
+                                  @Param("minLat") double minLatitude, @Param("minLon") double minLongitude,
+                                  @Param("maxLat") double maxLatitude, @Param("maxLon") double maxLongitude,
+                                  @Param("status") String status, @Param("limit") int limit);
 }
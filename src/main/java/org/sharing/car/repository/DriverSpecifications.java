@@ -0,0 +1,68 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.repository;
+
+import org.sharing.car.domainvalue.OnlineStatus;
+import org.sharing.car.dto.DriverFilter;
+import org.sharing.car.entity.Driver;
+import org.sharing.car.entity.Driver_;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.ZonedDateTime;
+import java.util.Locale;
+
+public final class DriverSpecifications {
+
+    private DriverSpecifications() {
+    }
+
+    public static Specification<Driver> matching(DriverFilter filter) {
+        return Specification.where(hasStatus(filter.getStatus()))
+                .and(olderThanOrAged(filter.getMinAge()))
+                .and(youngerThanOrAged(filter.getMaxAge()))
+                .and(nameStartsWith(filter.getName()))
+                .and(updatedSince(filter.getUpdatedSince()));
+    }
+
+    public static Specification<Driver> hasStatus(OnlineStatus status) {
+        return (status == null) ? null : (root, query, builder) -> builder.equal(root.get(Driver_.status), status);
+    }
+
+    public static Specification<Driver> olderThanOrAged(Integer age) {
+        return (age == null) ? null : (root, query, builder) -> builder.greaterThanOrEqualTo(root.get(Driver_.age), age);
+    }
+
+    public static Specification<Driver> youngerThanOrAged(Integer age) {
+        return (age == null) ? null : (root, query, builder) -> builder.lessThanOrEqualTo(root.get(Driver_.age), age);
+    }
+
+    public static Specification<Driver> nameStartsWith(String prefix) {
+        if (prefix == null || prefix.isBlank()) {
+            return null;
+        }
+        // the prefix is user input, so like wildcards in it are matched literally
+        String pattern = prefix.trim().toLowerCase(Locale.ROOT).replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return (root, query, builder) -> builder.or(
+                builder.like(builder.lower(root.get(Driver_.firstName)), pattern, '\\'),
+                builder.like(builder.lower(root.get(Driver_.lastName)), pattern, '\\'));
+    }
+
+    public static Specification<Driver> updatedSince(ZonedDateTime since) {
+        return (since == null) ? null : (root, query, builder) -> builder.greaterThanOrEqualTo(root.get(Driver_.updatedDate), since);
+    }
+}
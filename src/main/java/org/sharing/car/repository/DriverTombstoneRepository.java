@@ -0,0 +1,40 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.repository;
+
+import org.sharing.car.entity.DriverTombstone;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+public interface DriverTombstoneRepository extends JpaRepository<DriverTombstone, Long> {
+
+    @Query("select t from DriverTombstone t where (t.deletedDate > :since or (t.deletedDate = :since and t.driverId > :lastId))"
+            + " and t.deletedDate <= :until order by t.deletedDate, t.driverId")
+    List<DriverTombstone> findDeletedSince(@Param("since") ZonedDateTime since, @Param("lastId") Long lastId,
+                                           @Param("until") ZonedDateTime until, Pageable pageable);
+
+    @Modifying
+    @Query("delete from DriverTombstone t where t.deletedDate < :before")
+    int deleteByDeletedDateBefore(@Param("before") ZonedDateTime before);
+}
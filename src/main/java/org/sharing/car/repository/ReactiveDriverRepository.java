@@ -0,0 +1,107 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sharing.car.repository;
+
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Row;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.dto.DriverDTO;
+import org.sharing.car.exception.InvalidConstraintsException;
+import org.springframework.data.domain.Sort;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Map;
+
+// Non-blocking read counterpart of DriverRepository over R2DBC, returning DTOs straight from the rows, without the password as
+// DriverMapper does
+public class ReactiveDriverRepository {
+
+    static final String SELECT_DRIVERS = "select id, first_name, last_name, email, age, latitude, longitude, status, version from drivers";
+
+    // sortable DTO fields and their columns, anything else is rejected rather than concatenated into the query
+    static final Map<String, String> SORT_COLUMNS = Map.of(
+            "id", "id",
+            "firstName", "first_name",
+            "lastName", "last_name",
+            "email", "email",
+            "age", "age",
+            "status", "status",
+            "createdDate", "created_date",
+            "updatedDate", "updated_date");
+
+    private final ConnectionFactory connectionFactory;
+    private final DatabaseClient databaseClient;
+
+    public ReactiveDriverRepository(ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+        this.databaseClient = DatabaseClient.create(connectionFactory);
+    }
+
+    public Mono<DriverDTO> findById(Long id) {
+        return databaseClient.sql(SELECT_DRIVERS + " where id = :id")
+                .bind("id", id)
+                .map((row, metadata) -> toDTO(row))
+                .one();
+    }
+
+    public Flux<DriverDTO> findAllById(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        return databaseClient.sql(SELECT_DRIVERS + " where id in (:ids)")
+                .bind("ids", ids)
+                .map((row, metadata) -> toDTO(row))
+                .all();
+    }
+
+    public Flux<DriverDTO> findAll(int pageNo, int pageSize, Sort.Direction direction, String fieldName) {
+        String column = SORT_COLUMNS.get(fieldName);
+        if (column == null) {
+            return Flux.error(new InvalidConstraintsException("Invalid sort field " + fieldName));
+        }
+        return databaseClient.sql(SELECT_DRIVERS + " order by " + column + " " + direction.name() + ", id " + direction.name() + " limit :limit offset :offset")
+                .bind("limit", pageSize)
+                .bind("offset", (long) pageNo * pageSize)
+                .map((row, metadata) -> toDTO(row))
+                .all();
+    }
+
+    public Flux<DriverDTO> streamAll(Sort.Direction direction) {
+        return databaseClient.sql(SELECT_DRIVERS + " order by id " + direction.name())
+                .map((row, metadata) -> toDTO(row))
+                .all();
+    }
+
+    public void close() {
+        if (connectionFactory instanceof Disposable) {
+            ((Disposable) connectionFactory).dispose();
+        }
+    }
+
+    private static DriverDTO toDTO(Row row) {
+        Double latitude = row.get("latitude", Double.class);
+        Double longitude = row.get("longitude", Double.class);
+        return new DriverDTO(row.get("id", Long.class), row.get("first_name", String.class), row.get("last_name", String.class),
+                row.get("email", String.class), null, row.get("age", Integer.class),
+                (latitude == null || longitude == null) ? null : new GeoCoordinate(latitude, longitude), row.get("status", String.class),
+                row.get("version", Long.class));
+    }
+}
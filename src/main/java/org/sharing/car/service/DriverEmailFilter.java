@@ -0,0 +1,171 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+// Bloom filter over the registered emails: a miss proves an email is new, a hit still has to be confirmed against the drivers table.
+// Bits cannot be cleared, so deleted or replaced emails are only counted as stale until the filter is rebuilt from the table.
+@Component
+public class DriverEmailFilter {
+
+    private final long expectedEmails;
+    private final double falsePositiveRate;
+    private final double rebuildStaleRatio;
+    private final AtomicLong stale = new AtomicLong();
+    private final LongAdder skippedChecks = new LongAdder();
+    private volatile Bits bits;
+    private volatile Bits rebuilding;
+
+    public DriverEmailFilter(@Value("${driver.email-filter.expected-emails:1000000}") long expectedEmails,
+                             @Value("${driver.email-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                             @Value("${driver.email-filter.rebuild-stale-ratio:0.1}") double rebuildStaleRatio) {
+        if (expectedEmails <= 0) {
+            throw new IllegalArgumentException("Invalid expected email count " + expectedEmails);
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid false positive rate " + falsePositiveRate);
+        }
+        this.expectedEmails = expectedEmails;
+        this.falsePositiveRate = falsePositiveRate;
+        this.rebuildStaleRatio = rebuildStaleRatio;
+        this.bits = new Bits(expectedEmails, falsePositiveRate);
+    }
+
+    public void put(String email) {
+        long hash = DriverEmailFilter.hash(email);
+        bits.put(hash);
+        // a signup during a rebuild may not be in the table yet when the scan passes it
+        Bits next = rebuilding;
+        if (next != null) {
+            next.put(hash);
+        }
+    }
+
+    public boolean mightContain(String email) {
+        boolean hit = bits.mightContain(DriverEmailFilter.hash(email));
+        if (!hit) {
+            skippedChecks.increment();
+        }
+        return hit;
+    }
+
+    public void markStale(long count) {
+        stale.addAndGet(count);
+    }
+
+    // once stale emails pile up the false positives cost lookups, once the table outgrows the filter they cost more
+    public boolean needsRebuild() {
+        Bits current = bits;
+        long entries = current.entries.sum();
+        return entries > current.capacity || (stale.get() > 0 && stale.get() >= entries * rebuildStaleRatio);
+    }
+
+    // sized for twice the current table, so it can grow before the false positive rate degrades
+    public synchronized void rebuild(long registered, Stream<String> emails) {
+        Bits next = new Bits(Math.max(expectedEmails, registered * 2), falsePositiveRate);
+        long staleBefore = stale.get();
+        rebuilding = next;
+        try {
+            emails.forEach(email -> next.put(DriverEmailFilter.hash(email)));
+            bits = next;
+            stale.addAndGet(-staleBefore);
+        } finally {
+            rebuilding = null;
+        }
+    }
+
+    public long getEntries() {
+        return bits.entries.sum();
+    }
+
+    public long getStaleCount() {
+        return stale.get();
+    }
+
+    public long getSkippedChecks() {
+        return skippedChecks.sum();
+    }
+
+    // 64-bit FNV-1a with a murmur3 finaliser, String.hashCode alone is too narrow for two independent probes
+    static long hash(String email) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < email.length(); i++) {
+            hash = (hash ^ email.charAt(i)) * 0x100000001b3L;
+        }
+        return DriverEmailFilter.mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static final class Bits {
+
+        private final AtomicLongArray words;
+        private final long size;
+        private final int probes;
+        private final long capacity;
+        private final LongAdder entries = new LongAdder();
+
+        private Bits(long capacity, double falsePositiveRate) {
+            long wanted = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.words = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE - 8, (wanted + 63) >>> 6));
+            this.size = words.length() * 64L;
+            this.probes = Math.max(1, (int) Math.round((double) size / capacity * Math.log(2)));
+            this.capacity = capacity;
+        }
+
+        // double hashing, probe i lands on h1 + i * h2
+        private void put(long hash) {
+            long h2 = DriverEmailFilter.mix(hash ^ 0x9e3779b97f4a7c15L) | 1;
+            for (int i = 0; i < probes; i++) {
+                long bit = ((hash + i * h2) & Long.MAX_VALUE) % size;
+                int index = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long word = words.get(index);
+                while ((word & mask) == 0 && !words.compareAndSet(index, word, word | mask)) {
+                    word = words.get(index);
+                }
+            }
+            entries.increment();
+        }
+
+        private boolean mightContain(long hash) {
+            long h2 = DriverEmailFilter.mix(hash ^ 0x9e3779b97f4a7c15L) | 1;
+            for (int i = 0; i < probes; i++) {
+                long bit = ((hash + i * h2) & Long.MAX_VALUE) % size;
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.sharing.car.dto.DriverBatchResultDTO;
+import org.sharing.car.dto.DriverCreationDTO;
+import org.sharing.car.dto.DriverDTO;
+import org.sharing.car.dto.DriverImportReportDTO;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.exception.DuplicateEmailException;
+import org.sharing.car.exception.InvalidConstraintsException;
+import org.sharing.car.mapper.DriverMapper;
+import org.sharing.car.util.CsvRecordReader;
+import org.sharing.car.util.DriverFileFormat;
+import org.sharing.car.util.JsonMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+// Imports driver files chunk by chunk: records are read one at a time, parsed and validated in parallel,
+// and every chunk is created in its own transaction, so neither the file nor the rows are ever held as a whole
+@Slf4j
+@Service
+public class DriverImporter {
+
+    static final String REJECTED_SUFFIX = ".rejected.ndjson";
+    static final List<String> CSV_COLUMNS = List.of("firstName", "lastName", "email", "password", "age", "latitude", "longitude");
+
+    private final DriverService driverService;
+    private final DriverMapper mapper;
+    private final Validator validator;
+    private final ForkJoinPool validationPool;
+    private final int chunkSize;
+    private final int maxReportedRejections;
+    private final int maxRecordLength;
+    private final Counter importedRows;
+    private final Counter rejectedRows;
+
+    public DriverImporter(DriverService driverService, DriverMapper mapper, Validator validator, MeterRegistry meterRegistry,
+                          @Value("${driver.import.parallelism:0}") int parallelism,
+                          @Value("${driver.import.chunk-size:1000}") int chunkSize,
+                          @Value("${driver.import.max-reported-rejections:1000}") int maxReportedRejections,
+                          @Value("${driver.import.max-record-length:65536}") int maxRecordLength) {
+        this.driverService = driverService;
+        this.mapper = mapper;
+        this.validator = validator;
+        this.validationPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.chunkSize = chunkSize;
+        this.maxReportedRejections = maxReportedRejections;
+        this.maxRecordLength = maxRecordLength;
+        this.importedRows = Counter.builder("driver.import.rows").tag("outcome", "imported")
+                .description("Driver records created by file imports").register(meterRegistry);
+        this.rejectedRows = Counter.builder("driver.import.rows").tag("outcome", "rejected")
+                .description("Driver records rejected by file imports").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        validationPool.shutdown();
+    }
+
+    // reads the file sequentially through its channel, every rejected record is written to <file>.rejected.ndjson
+    public DriverImportReportDTO importFile(Path file) throws IOException {
+        Path rejectedFile = file.resolveSibling(file.getFileName() + REJECTED_SUFFIX);
+        DriverImportReportDTO report;
+        try (InputStream in = Files.newInputStream(file);
+             BufferedWriter rejectedWriter = Files.newBufferedWriter(rejectedFile, StandardCharsets.UTF_8)) {
+            report = importDrivers(in, DriverFileFormat.ofFileName(file.getFileName().toString()), rejection -> {
+                try {
+                    rejectedWriter.write(JsonMapper.serialize(rejection));
+                    rejectedWriter.newLine();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        }
+        if (report.getRejected() == 0) {
+            Files.delete(rejectedFile);
+        }
+        return report;
+    }
+
+    // rejectionSink, if given, sees every rejected record, the report only keeps the first max-reported-rejections
+    public DriverImportReportDTO importDrivers(InputStream in, DriverFileFormat format, Consumer<DriverBatchResultDTO> rejectionSink) throws IOException {
+        DriverImportReportDTO report = new DriverImportReportDTO(0, 0, 0, new ArrayList<>());
+        long startedAt = System.currentTimeMillis();
+        long loggedAt = startedAt;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 65536);
+        try (RecordSource source = (format == DriverFileFormat.CSV)
+                ? new CsvSource(reader, maxRecordLength) : new NdjsonSource(reader, maxRecordLength)) {
+            List<Supplier<DriverCreationDTO>> chunk = new ArrayList<>(chunkSize);
+            Supplier<DriverCreationDTO> record;
+            do {
+                record = source.next();
+                if (record != null) {
+                    chunk.add(record);
+                }
+                if (chunk.size() == chunkSize || (record == null && !chunk.isEmpty())) {
+                    importChunk(chunk, report, rejectionSink);
+                    chunk.clear();
+                    if (System.currentTimeMillis() - loggedAt >= 5000) {
+                        loggedAt = System.currentTimeMillis();
+                        log.info("Driver import: {} read, {} imported, {} rejected", report.getRead(), report.getImported(), report.getRejected());
+                    }
+                }
+            } while (record != null);
+        }
+        log.info("Driver import finished in {} ms: {} read, {} imported, {} rejected",
+                System.currentTimeMillis() - startedAt, report.getRead(), report.getImported(), report.getRejected());
+        return report;
+    }
+
+    private void importChunk(List<Supplier<DriverCreationDTO>> chunk, DriverImportReportDTO report, Consumer<DriverBatchResultDTO> rejectionSink) {
+        long firstIndex = report.getRead();
+        List<Object> checked = validationPool.submit(() -> chunk.parallelStream().map(this::check).collect(Collectors.toList())).join();
+        report.setRead(firstIndex + chunk.size());
+        List<Integer> accepted = new ArrayList<>();
+        List<DriverDTO> drivers = new ArrayList<>();
+        // taken emails, and repeats within the chunk, are turned away up front so they never roll back the chunk insert
+        Set<String> takenEmails = new HashSet<>(driverService.findRegisteredEmails(checked.stream()
+                .filter(DriverDTO.class::isInstance).map(driver -> ((DriverDTO) driver).getEmail()).collect(Collectors.toList())));
+        for (int i = 0; i < checked.size(); i++) {
+            if (!(checked.get(i) instanceof DriverDTO)) {
+                reject(report, rejectionSink, firstIndex + i, (String) checked.get(i));
+            } else if (!takenEmails.add(((DriverDTO) checked.get(i)).getEmail())) {
+                reject(report, rejectionSink, firstIndex + i, HttpStatus.CONFLICT,
+                        "Email already registered: " + ((DriverDTO) checked.get(i)).getEmail());
+            } else {
+                accepted.add(i);
+                drivers.add((DriverDTO) checked.get(i));
+            }
+        }
+        if (drivers.isEmpty()) {
+            return;
+        }
+        try {
+            driverService.createDrivers(drivers);
+            importedRows.increment(drivers.size());
+            report.setImported(report.getImported() + drivers.size());
+        } catch (DataIntegrityViolationException | InvalidConstraintsException | DuplicateEmailException ex) {
+            // a constraint the checks above cannot see, or an email registered meanwhile, rolls back the whole chunk,
+            // retrying one by one isolates the offending record
+            for (int i = 0; i < drivers.size(); i++) {
+                try {
+                    driverService.createDriver(drivers.get(i));
+                    importedRows.increment();
+                    report.setImported(report.getImported() + 1);
+                } catch (DuplicateEmailException rowEx) {
+                    reject(report, rejectionSink, firstIndex + accepted.get(i), HttpStatus.CONFLICT, rowEx.getMessage());
+                } catch (DataIntegrityViolationException rowEx) {
+                    reject(report, rejectionSink, firstIndex + accepted.get(i), rowEx.getMostSpecificCause().getMessage());
+                } catch (InvalidConstraintsException rowEx) {
+                    reject(report, rejectionSink, firstIndex + accepted.get(i), rowEx.getMessage());
+                }
+            }
+        }
+    }
+
+    // runs on the validation pool, yields the DriverDTO to create or the reason the record is rejected
+    private Object check(Supplier<DriverCreationDTO> record) {
+        DriverCreationDTO request;
+        try {
+            request = record.get();
+        } catch (IllegalArgumentException ex) {
+            return ex.getMessage();
+        }
+        if (request == null) {
+            return "Driver must not be empty";
+        }
+        Set<ConstraintViolation<DriverCreationDTO>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            return violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining(", "));
+        }
+        return mapper.toDTO(request);
+    }
+
+    private void reject(DriverImportReportDTO report, Consumer<DriverBatchResultDTO> rejectionSink, long index, String error) {
+        reject(report, rejectionSink, index, HttpStatus.BAD_REQUEST, error);
+    }
+
+    private void reject(DriverImportReportDTO report, Consumer<DriverBatchResultDTO> rejectionSink, long index, HttpStatus status, String error) {
+        DriverBatchResultDTO rejection = new DriverBatchResultDTO((int) index, null, status.value(), error, null);
+        rejectedRows.increment();
+        report.setRejected(report.getRejected() + 1);
+        if (report.getRejections().size() < maxReportedRejections) {
+            report.getRejections().add(rejection);
+        }
+        if (rejectionSink != null) {
+            rejectionSink.accept(rejection);
+        }
+    }
+
+    // hands out raw records, parsing is deferred to the validation pool
+    private interface RecordSource extends Closeable {
+        Supplier<DriverCreationDTO> next() throws IOException;
+    }
+
+    private static Supplier<DriverCreationDTO> rejected(String error) {
+        return () -> {
+            throw new IllegalArgumentException(error);
+        };
+    }
+
+    private static class NdjsonSource implements RecordSource {
+
+        private final BufferedReader reader;
+        private final int maxRecordLength;
+        private final StringBuilder line = new StringBuilder();
+
+        NdjsonSource(BufferedReader reader, int maxRecordLength) {
+            this.reader = reader;
+            this.maxRecordLength = maxRecordLength;
+        }
+
+        @Override
+        public Supplier<DriverCreationDTO> next() throws IOException {
+            int c;
+            do {
+                line.setLength(0);
+                boolean oversized = false;
+                // readLine would collect a line of any length, the characters past the limit are skipped instead
+                while ((c = reader.read()) != -1 && c != '\n') {
+                    if (line.length() < maxRecordLength) {
+                        line.append((char) c);
+                    } else {
+                        oversized = true;
+                    }
+                }
+                if (oversized) {
+                    return DriverImporter.rejected("Record is longer than " + maxRecordLength + " characters");
+                }
+            } while (c != -1 && isBlank(line));
+            if (c == -1 && isBlank(line)) {
+                return null;
+            }
+            String json = line.toString();
+            return () -> {
+                try {
+                    return JsonMapper.readerFor(DriverCreationDTO.class).readValue(json);
+                } catch (JsonProcessingException ex) {
+                    throw new IllegalArgumentException("Invalid JSON: " + ex.getOriginalMessage());
+                }
+            };
+        }
+
+        private static boolean isBlank(CharSequence line) {
+            for (int i = 0; i < line.length(); i++) {
+                if (!Character.isWhitespace(line.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private static class CsvSource implements RecordSource {
+
+        private final CsvRecordReader reader;
+        private final Map<String, Integer> columns = new HashMap<>();
+
+        CsvSource(BufferedReader reader, int maxRecordLength) throws IOException {
+            this.reader = new CsvRecordReader(reader, maxRecordLength);
+            List<String> header;
+            try {
+                header = this.reader.next();
+            } catch (IllegalArgumentException ex) {
+                throw new InvalidConstraintsException("CSV header: " + ex.getMessage());
+            }
+            if (header != null) {
+                for (int i = 0; i < header.size(); i++) {
+                    columns.put(header.get(i).trim(), i);
+                }
+            }
+            List<String> missing = CSV_COLUMNS.stream().filter(column -> !columns.containsKey(column)).collect(Collectors.toList());
+            if (header != null && !missing.isEmpty()) {
+                throw new InvalidConstraintsException("CSV header is missing the columns " + missing);
+            }
+        }
+
+        @Override
+        public Supplier<DriverCreationDTO> next() throws IOException {
+            List<String> fields;
+            try {
+                do {
+                    fields = reader.next();
+                } while (fields != null && fields.size() == 1 && fields.get(0).isBlank());
+            } catch (IllegalArgumentException ex) {
+                return DriverImporter.rejected(ex.getMessage());
+            }
+            if (fields == null) {
+                return null;
+            }
+            List<String> record = fields;
+            return () -> toRequest(record);
+        }
+
+        private DriverCreationDTO toRequest(List<String> record) {
+            String latitude = field(record, "latitude");
+            String longitude = field(record, "longitude");
+            GeoCoordinate coordinate = (latitude.isEmpty() && longitude.isEmpty()) ? null
+                    : new GeoCoordinate(number(latitude, "latitude"), number(longitude, "longitude"));
+            String age = field(record, "age");
+            return new DriverCreationDTO(field(record, "firstName"), field(record, "lastName"), field(record, "email"),
+                    field(record, "password"), age.isEmpty() ? 0 : integer(age, "age"), coordinate);
+        }
+
+        private String field(List<String> record, String column) {
+            int index = columns.get(column);
+            return (index < record.size()) ? record.get(index).trim() : "";
+        }
+
+        private static double number(String value, String column) {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid " + column + " " + value);
+            }
+        }
+
+        private static int integer(String value, String column) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid " + column + " " + value);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.sharing.car.config.CacheConfig;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.dto.DriverDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Last-write-wins buffer of reported driver positions, written to the drivers table in periodic JDBC batches
+@Slf4j
+@Component
+public class DriverLocationBuffer {
+
+    static final String UPDATE_COORDINATE = "update drivers set latitude = ?, longitude = ?, updated_date = ? where id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CacheManager cacheManager;
+    private final int batchSize;
+    private final Map<Long, GeoCoordinate> pending = new ConcurrentHashMap<>();
+
+    public DriverLocationBuffer(JdbcTemplate jdbcTemplate, CacheManager cacheManager, @Value("${driver.location.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cacheManager = cacheManager;
+        this.batchSize = batchSize;
+    }
+
+    public void record(Long driverId, GeoCoordinate coordinate) {
+        pending.put(driverId, coordinate);
+    }
+
+    public Optional<GeoCoordinate> get(Long driverId) {
+        return Optional.ofNullable(pending.get(driverId));
+    }
+
+    // called before a full driver write; it waits out a flush in progress, whose snapshot may still hold this driver's old
+    // position, so that flush cannot land after the write and overwrite its coordinate. Callers must not hold a row lock here
+    public synchronized void discard(Long driverId) {
+        pending.remove(driverId);
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${driver.location.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Long, GeoCoordinate>> snapshot = new ArrayList<>(pending.size());
+        pending.forEach((id, coordinate) -> snapshot.add(Map.entry(id, coordinate)));
+
+        Timestamp now = Timestamp.from(Instant.now());
+        Map<Long, GeoCoordinate> written = new HashMap<>();
+        for (int from = 0; from < snapshot.size(); from += batchSize) {
+            List<Map.Entry<Long, GeoCoordinate>> chunk = snapshot.subList(from, Math.min(from + batchSize, snapshot.size()));
+            List<Object[]> arguments = new ArrayList<>(chunk.size());
+            for (Map.Entry<Long, GeoCoordinate> entry : chunk) {
+                arguments.add(new Object[]{entry.getValue().getLatitude(), entry.getValue().getLongitude(), now, entry.getKey()});
+            }
+            try {
+                jdbcTemplate.batchUpdate(UPDATE_COORDINATE, arguments);
+            } catch (RuntimeException ex) {
+                log.error("DriverLocationBuffer: flush() Failed to write {} driver positions", chunk.size(), ex);
+                continue;
+            }
+            // positions reported while the batch was being written stay buffered for the next flush
+            chunk.forEach(entry -> {
+                pending.remove(entry.getKey(), entry.getValue());
+                written.put(entry.getKey(), entry.getValue());
+            });
+        }
+        if (!written.isEmpty()) {
+            updateCachedPages(written);
+        }
+    }
+
+    // cached list pages are read with the buffer overlaid, which no longer holds these positions. The pages that list a written
+    // driver get its coordinate in place rather than being evicted, so steady position reports do not keep the cache empty, and
+    // as the value is not replaced the page keeps its original expiry
+    @SuppressWarnings("unchecked")
+    private void updateCachedPages(Map<Long, GeoCoordinate> written) {
+        Cache pages = cacheManager.getCache(CacheConfig.DRIVER_PAGES);
+        if (pages == null || !(pages.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache)) {
+            return;
+        }
+        for (Object page : ((com.github.benmanes.caffeine.cache.Cache<Object, Object>) pages.getNativeCache()).asMap().values()) {
+            if (page instanceof CopyOnWriteArrayList) {
+                List<DriverDTO> drivers = (List<DriverDTO>) page;
+                for (int i = 0; i < drivers.size(); i++) {
+                    GeoCoordinate coordinate = written.get(drivers.get(i).getId());
+                    if (coordinate != null) {
+                        drivers.set(i, drivers.get(i).withCoordinate(coordinate));
+                    }
+                }
+            }
+        }
+    }
+}
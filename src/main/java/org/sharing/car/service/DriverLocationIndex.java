@@ -0,0 +1,192 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.domainvalue.OnlineStatus;
+import org.sharing.car.entity.Driver;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Uniform latitude/longitude grid of ONLINE drivers; a nearest lookup only visits the cells overlapping the radius
+@Component
+public class DriverLocationIndex {
+
+    static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final double KM_PER_DEGREE = 111.32;
+
+    private final double cellSize;
+    private final int columns;
+    private final Map<Long, Position> positions = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> cells = new ConcurrentHashMap<>();
+
+    public DriverLocationIndex(@Value("${driver.index.cell-size-degrees:0.05}") double cellSize) {
+        if (cellSize <= 0 || cellSize > 90) {
+            throw new IllegalArgumentException("Invalid grid cell size " + cellSize);
+        }
+        this.cellSize = cellSize;
+        this.columns = (int) Math.ceil(360 / cellSize);
+    }
+
+    public void update(Driver driver) {
+        GeoCoordinate coordinate = driver.getCoordinate();
+        if (driver.getStatus() == OnlineStatus.ONLINE && coordinate != null) {
+            put(driver.getId(), coordinate.getLatitude(), coordinate.getLongitude());
+        } else {
+            remove(driver.getId());
+        }
+    }
+
+    public void put(long driverId, double latitude, double longitude) {
+        long cell = cellOf(latitude, longitude);
+        positions.compute(driverId, (id, previous) -> {
+            if (previous != null && previous.cell != cell) {
+                leaveCell(previous.cell, id);
+            }
+            if (previous == null || previous.cell != cell) {
+                enterCell(cell, id);
+            }
+            return new Position(latitude, longitude, cell);
+        });
+    }
+
+    public void remove(long driverId) {
+        positions.computeIfPresent(driverId, (id, previous) -> {
+            leaveCell(previous.cell, id);
+            return null;
+        });
+    }
+
+    public boolean contains(long driverId) {
+        return positions.containsKey(driverId);
+    }
+
+    public int size() {
+        return positions.size();
+    }
+
+    public void clear() {
+        positions.clear();
+        cells.clear();
+    }
+
+    public List<Neighbour> findNearest(double latitude, double longitude, double radiusKm, int limit) {
+        List<Neighbour> matches = new ArrayList<>();
+        double latitudeSpan = radiusKm / KM_PER_DEGREE;
+        double cosine = Math.cos(Math.toRadians(latitude));
+        double longitudeSpan = cosine > 1e-6 ? radiusKm / (KM_PER_DEGREE * cosine) : 180;
+
+        int minRow = row(Math.max(-90, latitude - latitudeSpan));
+        int maxRow = row(Math.min(90, latitude + latitudeSpan));
+        int columnSpan = longitudeSpan >= 180 ? columns : (int) Math.ceil(longitudeSpan / cellSize) + 1;
+        long cellsToVisit = (long) (maxRow - minRow + 1) * Math.min(columns, 2L * columnSpan + 1);
+
+        if (cellsToVisit > positions.size()) {
+            // the radius covers more cells than there are drivers, a plain scan is cheaper
+            positions.forEach((id, position) -> collect(matches, id, position, latitude, longitude, radiusKm));
+        } else {
+            boolean allColumns = 2L * columnSpan + 1 >= columns;
+            int firstColumn = allColumns ? 0 : column(longitude) - columnSpan;
+            int lastColumn = allColumns ? columns - 1 : column(longitude) + columnSpan;
+            for (int row = minRow; row <= maxRow; row++) {
+                for (int step = firstColumn; step <= lastColumn; step++) {
+                    int column = Math.floorMod(step, columns);
+                    Set<Long> ids = cells.get((long) row * columns + column);
+                    if (ids == null) {
+                        continue;
+                    }
+                    for (Long id : ids) {
+                        Position position = positions.get(id);
+                        if (position != null) {
+                            collect(matches, id, position, latitude, longitude, radiusKm);
+                        }
+                    }
+                }
+            }
+        }
+
+        matches.sort(Comparator.comparingDouble(Neighbour::getDistanceKm));
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double deltaLatitude = Math.toRadians(latitude2 - latitude1);
+        double deltaLongitude = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(deltaLatitude / 2) * Math.sin(deltaLatitude / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * Math.sin(deltaLongitude / 2) * Math.sin(deltaLongitude / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private static void collect(List<Neighbour> matches, Long id, Position position, double latitude, double longitude, double radiusKm) {
+        double distance = distanceKm(latitude, longitude, position.latitude, position.longitude);
+        if (distance <= radiusKm) {
+            matches.add(new Neighbour(id, distance));
+        }
+    }
+
+    private void enterCell(long cell, Long driverId) {
+        cells.compute(cell, (key, ids) -> {
+            Set<Long> members = (ids == null) ? ConcurrentHashMap.newKeySet() : ids;
+            members.add(driverId);
+            return members;
+        });
+    }
+
+    private void leaveCell(long cell, Long driverId) {
+        cells.computeIfPresent(cell, (key, ids) -> {
+            ids.remove(driverId);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private long cellOf(double latitude, double longitude) {
+        return (long) row(latitude) * columns + column(longitude);
+    }
+
+    private int row(double latitude) {
+        return (int) Math.floor((latitude + 90) / cellSize);
+    }
+
+    private int column(double longitude) {
+        return Math.floorMod((int) Math.floor((longitude + 180) / cellSize), columns);
+    }
+
+    @AllArgsConstructor
+    private static final class Position {
+        private final double latitude;
+        private final double longitude;
+        private final long cell;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static final class Neighbour {
+        private final long driverId;
+        private final double distanceKm;
+    }
+}
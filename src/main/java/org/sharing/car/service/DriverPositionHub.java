@@ -0,0 +1,141 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sharing.car.service;
+
+import org.sharing.car.domainvalue.BoundingBox;
+import org.sharing.car.dto.DriverPositionDTO;
+import org.sharing.car.exception.InvalidConstraintsException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fans driver position changes out to bounding-box subscribers. Each subscriber has its own bounded queue
+// keyed by driver id, so a slow client only ever holds the latest position per driver and writers never block.
+@Component
+public class DriverPositionHub {
+
+    private final int queueCapacity;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final LongAdder conflated = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public DriverPositionHub(@Value("${driver.feed.queue-capacity:1000}") int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    // listener runs on the publishing thread whenever the subscription goes from empty to having events
+    public Subscription subscribe(BoundingBox box, Runnable listener) {
+        if (!box.isValid()) {
+            throw new InvalidConstraintsException("Invalid bounding box " + box);
+        }
+        Subscription subscription = new Subscription(box, listener);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    public void publish(DriverPositionDTO position) {
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(position);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    public long getConflatedCount() {
+        return conflated.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public final class Subscription implements AutoCloseable {
+
+        private final BoundingBox box;
+        private final Runnable listener;
+        private final Map<Long, DriverPositionDTO> pending = new LinkedHashMap<>();
+        // drivers last reported inside the box, so the subscriber also hears when they leave or go away
+        private final Set<Long> visible = new HashSet<>();
+
+        private Subscription(BoundingBox box, Runnable listener) {
+            this.box = box;
+            this.listener = listener;
+        }
+
+        void offer(DriverPositionDTO position) {
+            boolean signal;
+            synchronized (this) {
+                boolean inside = position.getCoordinate() != null && box.contains(position.getCoordinate());
+                if (inside) {
+                    visible.add(position.getId());
+                } else if (!visible.remove(position.getId())) {
+                    return;
+                }
+                signal = pending.isEmpty();
+                if (pending.put(position.getId(), position) != null) {
+                    conflated.increment();
+                } else if (pending.size() > queueCapacity) {
+                    Iterator<DriverPositionDTO> eldest = pending.values().iterator();
+                    eldest.next();
+                    eldest.remove();
+                    dropped.increment();
+                }
+            }
+            if (signal) {
+                listener.run();
+            }
+        }
+
+        public synchronized List<DriverPositionDTO> drain(int max) {
+            if (pending.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<DriverPositionDTO> positions = new ArrayList<>(Math.min(max, pending.size()));
+            Iterator<DriverPositionDTO> iterator = pending.values().iterator();
+            while (iterator.hasNext() && positions.size() < max) {
+                positions.add(iterator.next());
+                iterator.remove();
+            }
+            return positions;
+        }
+
+        public synchronized boolean isEmpty() {
+            return pending.isEmpty();
+        }
+
+        public BoundingBox getBox() {
+            return box;
+        }
+
+        @Override
+        public void close() {
+            subscriptions.remove(this);
+        }
+    }
+}
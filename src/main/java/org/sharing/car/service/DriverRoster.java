@@ -0,0 +1,126 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sharing.car.service;
+
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.domainvalue.OnlineStatus;
+import org.sharing.car.dto.DriverDTO;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// ONLINE drivers as compact immutable entries, so dispatch lookups and status listings never touch the drivers table
+@Component
+public class DriverRoster {
+
+    private final ConcurrentNavigableMap<Long, Entry> online = new ConcurrentSkipListMap<>();
+
+    public void update(DriverDTO driver) {
+        if (OnlineStatus.ONLINE.name().equals(driver.getStatus())) {
+            online.put(driver.getId(), new Entry(driver));
+        } else {
+            online.remove(driver.getId());
+        }
+    }
+
+    public void remove(long driverId) {
+        online.remove(driverId);
+    }
+
+    public void moveTo(long driverId, GeoCoordinate coordinate) {
+        online.computeIfPresent(driverId, (id, entry) -> entry.movedTo(coordinate));
+    }
+
+    // a fresh copy on every read, callers are free to change it
+    public DriverDTO get(long driverId) {
+        Entry entry = online.get(driverId);
+        return (entry == null) ? null : entry.toDTO(driverId);
+    }
+
+    public boolean contains(long driverId) {
+        return online.containsKey(driverId);
+    }
+
+    public int size() {
+        return online.size();
+    }
+
+    public void clear() {
+        online.clear();
+    }
+
+    // ids stay sorted as drivers come and go, so a page is a seek to afterId followed by offset + limit steps
+    public List<DriverDTO> page(boolean ascending, Long afterId, long offset, int limit) {
+        NavigableMap<Long, Entry> view = ascending ? online : online.descendingMap();
+        if (afterId != null) {
+            view = view.tailMap(afterId, false);
+        }
+        List<DriverDTO> page = new ArrayList<>(Math.min(limit, 64));
+        Iterator<Map.Entry<Long, Entry>> entries = view.entrySet().iterator();
+        for (long skipped = 0; skipped < offset && entries.hasNext(); skipped++) {
+            entries.next();
+        }
+        while (page.size() < limit && entries.hasNext()) {
+            Map.Entry<Long, Entry> entry = entries.next();
+            page.add(entry.getValue().toDTO(entry.getKey()));
+        }
+        return page;
+    }
+
+    // the fields a listing shows, the password hash stays in the drivers table
+    private static final class Entry {
+
+        private final String firstName;
+        private final String lastName;
+        private final String email;
+        private final int age;
+        private final boolean located;
+        private final double latitude;
+        private final double longitude;
+        private final Long version;
+
+        private Entry(DriverDTO driver) {
+            this(driver.getFirstName(), driver.getLastName(), driver.getEmail(), driver.getAge(), driver.getCoordinate(), driver.getVersion());
+        }
+
+        private Entry(String firstName, String lastName, String email, int age, GeoCoordinate coordinate, Long version) {
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.email = email;
+            this.age = age;
+            this.located = coordinate != null;
+            this.latitude = located ? coordinate.getLatitude() : 0;
+            this.longitude = located ? coordinate.getLongitude() : 0;
+            this.version = version;
+        }
+
+        private Entry movedTo(GeoCoordinate coordinate) {
+            return new Entry(firstName, lastName, email, age, coordinate, version);
+        }
+
+        private DriverDTO toDTO(long id) {
+            return new DriverDTO(id, firstName, lastName, email, null, age, located ? new GeoCoordinate(latitude, longitude) : null,
+                    OnlineStatus.ONLINE.name(), version);
+        }
+    }
+}
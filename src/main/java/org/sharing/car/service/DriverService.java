@@ -16,26 +16,76 @@
 
 package org.sharing.car.service;
 
+import io.micrometer.core.annotation.Timed;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
+import org.sharing.car.config.CacheConfig;
+import org.sharing.car.domainvalue.BoundingBox;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.domainvalue.OnlineStatus;
+import org.sharing.car.dto.DriverChangesDTO;
 import org.sharing.car.dto.DriverDTO;
+import org.sharing.car.dto.DriverFilter;
+import org.sharing.car.dto.DriverLocationDTO;
+import org.sharing.car.dto.DriverPositionDTO;
+import org.sharing.car.dto.DriverSlice;
 import org.sharing.car.entity.Driver;
+import org.sharing.car.entity.DriverTombstone;
+import org.sharing.car.exception.DriverConflictException;
 import org.sharing.car.exception.DriverNotFoundException;
+import org.sharing.car.exception.DuplicateEmailException;
 import org.sharing.car.exception.InvalidConstraintsException;
+import org.sharing.car.exception.PreconditionFailedException;
+import org.sharing.car.exception.ResyncRequiredException;
+import org.sharing.car.mapper.DriverMapper;
+import org.sharing.car.repository.DriverQueryRepository;
 import org.sharing.car.repository.DriverRepository;
+import org.sharing.car.repository.DriverSpecifications;
+import org.sharing.car.repository.DriverTombstoneRepository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -43,67 +93,755 @@ import java.util.stream.Collectors;
 public class DriverService {
 
     private final DriverRepository repository;
-    private final ModelMapper mapper;
+    private final DriverMapper mapper;
+    private final DriverLocationIndex locationIndex;
+    private final DriverLocationBuffer locationBuffer;
+    private final CacheManager cacheManager;
+    private final DriverPositionHub positionHub;
+    private final DriverRoster roster;
+    private final DriverTombstoneRepository tombstoneRepository;
+    private final DriverEmailFilter emailFilter;
 
+    @Value("${driver.cache.hot-pages:3}")
+    private int hotPages;
+
+    @Value("${driver.changes.settle-ms:2000}")
+    private long changesSettleMs;
+
+    @Value("${driver.changes.tombstone-retention-hours:168}")
+    private long tombstoneRetentionHours;
+
+    @Value("${driver.changes.max-limit:1000}")
+    private int maxChangesLimit;
+
+    @Value("${driver.export.fetch-size:500}")
+    private int exportFetchSize;
+
+    // read-write on purpose, the index is built from the primary and not from a replica that may still be catching up.
+    // Built on ApplicationStartedEvent, which comes before the ApplicationRunners, so the --import-drivers run has it too
+    @EventListener(ApplicationStartedEvent.class)
+    @Transactional
+    public void buildLocationIndex() {
+        locationIndex.clear();
+        roster.clear();
+        for (Driver driver : repository.findByStatus(OnlineStatus.ONLINE)) {
+            locationIndex.update(driver);
+            roster.update(withBufferedLocation(mapper.toDTO(driver)));
+        }
+        log.info("Indexed {} online drivers", roster.size());
+    }
+
+    // from the primary as well, an email a lagging replica has not seen yet would be a false negative
+    @EventListener(ApplicationStartedEvent.class)
+    @Transactional
+    public void buildEmailFilter() {
+        long registered = repository.count();
+        try (Stream<String> emails = repository.streamAllEmails()) {
+            emailFilter.rebuild(registered, emails);
+        }
+        log.info("Loaded {} driver emails into the duplicate filter", registered);
+    }
+
+    @Scheduled(fixedDelayString = "${driver.email-filter.rebuild-check-ms:300000}")
+    @Transactional
+    public void refreshEmailFilter() {
+        if (emailFilter.needsRebuild()) {
+            buildEmailFilter();
+        }
+    }
+
+    @Timed("driver.service")
     @Transactional
     public DriverDTO createDriver(DriverDTO driverDTO) throws InvalidConstraintsException {
+        if (driverDTO != null) {
+            checkEmailAvailable(driverDTO.getEmail());
+        }
         Driver newDriver;
         try {
-            newDriver = repository.save(mapper.map(driverDTO, Driver.class));
+            newDriver = repository.save(mapper.toEntity(driverDTO));
+            // flushed so a signup that raced past the email check fails here with 409, not at commit
+            repository.flush();
         } catch (InvalidConstraintsException ex) {
             log.error("InvalidDriverException: createDriver() Failed to create Driver " + driverDTO, ex);
             throw new InvalidConstraintsException(ex.getMessage());
+        } catch (DataIntegrityViolationException ex) {
+            throw DriverService.emailConflict(ex, driverDTO.getEmail());
         }
-        return mapper.map(newDriver, DriverDTO.class);
+        emailFilter.put(newDriver.getEmail());
+        DriverDTO createdDriver = mapper.toDTO(newDriver);
+        // the insert only runs when the transaction commits, a driver rolled back there must not linger in the index and roster
+        afterCommit(() -> {
+            locationIndex.update(newDriver);
+            roster.update(createdDriver);
+        });
+        driverCache().put(createdDriver.getId(), createdDriver);
+        pageCache().clear();
+        publishPosition(createdDriver.getId(), createdDriver.getCoordinate(), createdDriver.getStatus());
+        return createdDriver;
     }
 
-    @Transactional
+    @Timed("driver.service")
+    @Transactional(readOnly = true)
     public DriverDTO findDriverById(Long id) throws DriverNotFoundException {
+        DriverDTO online = roster.get(id);
+        if (online != null) {
+            return online;
+        }
+        Cache.ValueWrapper cached = driverCache().get(id);
+        if (cached != null) {
+            if (cached.get() == null) {
+                throw new DriverNotFoundException("Driver not found with ID " + id);
+            }
+            return withBufferedLocation((DriverDTO) cached.get());
+        }
         Driver driver;
         driver = DriverService.findById(repository, id).orElseThrow(() -> new DriverNotFoundException("Driver not found with ID " + id));
-        return mapper.map(driver, DriverDTO.class);
+        DriverDTO driverDTO = withBufferedLocation(mapper.toDTO(driver));
+        // an update or delete that committed while this read ran, or a replica behind it, must keep the entry it cached
+        driverCache().putIfAbsent(id, driverDTO);
+        return driverDTO;
     }
 
+    @Timed("driver.service")
+    @Transactional(readOnly = true)
+    public DriverDTO findDriverByEmail(String email) throws DriverNotFoundException {
+        if (email == null || email.isEmpty()) {
+            throw new InvalidConstraintsException("Email must not be empty");
+        }
+        Driver driver = repository.findByEmail(email).orElseThrow(() -> new DriverNotFoundException("Driver not found with email " + email));
+        DriverDTO online = roster.get(driver.getId());
+        if (online != null) {
+            return online;
+        }
+        // the row may come from a lagging replica, so a cached entry wins, above all the absent marker a delete leaves behind
+        Cache.ValueWrapper cached = driverCache().get(driver.getId());
+        if (cached != null) {
+            if (cached.get() == null) {
+                throw new DriverNotFoundException("Driver not found with email " + email);
+            }
+            return withBufferedLocation((DriverDTO) cached.get());
+        }
+        DriverDTO driverDTO = withBufferedLocation(mapper.toDTO(driver));
+        driverCache().putIfAbsent(driver.getId(), driverDTO);
+        return driverDTO;
+    }
+
+    // on the primary, a replica behind on recent signups would let a duplicate through to the insert
+    @Timed("driver.service")
+    @Transactional
+    public Set<String> findRegisteredEmails(Collection<String> emails) {
+        List<String> candidates = emails.stream().filter(Objects::nonNull).filter(emailFilter::mightContain).distinct().collect(Collectors.toList());
+        return candidates.isEmpty() ? new HashSet<>() : new HashSet<>(repository.findExistingEmails(candidates));
+    }
+
+    @Timed("driver.service")
     @Transactional
     public DriverDTO updateDriver(DriverDTO driverDTO, Long id) throws DriverNotFoundException {
-        Optional<Driver> driverToUpdate = DriverService.findById(repository, id);
-        Driver updatedDriver;
+        return updateDriver(driverDTO, id, null);
+    }
+
+    // expectedVersions come from If-Match, null accepts whatever version is current
+    @Timed("driver.service")
+    @Transactional
+    public DriverDTO updateDriver(DriverDTO driverDTO, Long id, Set<Long> expectedVersions) throws DriverNotFoundException {
+        Driver updatedDriver = DriverService.findById(repository, id)
+                .orElseThrow(() -> new DriverNotFoundException("DriverNotFoundException: updateDriver() Driver not found with ID " + id));
+        if (expectedVersions != null && !expectedVersions.contains(updatedDriver.getVersion())) {
+            throw new PreconditionFailedException("Driver " + id + " is at version " + updatedDriver.getVersion() + ", not " + expectedVersions);
+        }
+        boolean emailChanged = driverDTO.getEmail() != null && !driverDTO.getEmail().equals(updatedDriver.getEmail());
+        if (emailChanged) {
+            checkEmailAvailable(driverDTO.getEmail());
+        }
         try {
-            if (driverToUpdate.isPresent()) {
-                updatedDriver = mapper.map(driverDTO, Driver.class);
-                updatedDriver.setUpdatedDate(ZonedDateTime.now());
-                updatedDriver = repository.save(updatedDriver);
-            } else {
-                throw new DriverNotFoundException("DriverNotFoundException: updateDriver() Driver not found with ID " + id);
-            }
+            mapper.copyToEntity(driverDTO, updatedDriver);
+            updatedDriver.setUpdatedDate(ZonedDateTime.now());
+            locationBuffer.discard(id);
+            // flushed here so the returned version is the new one and a concurrent writer fails this update, not silently loses its own
+            updatedDriver = repository.saveAndFlush(updatedDriver);
         } catch (InvalidConstraintsException ex) {
             log.error("InvalidDriverException: updateDriver() Failed to update Driver {} with driver id {} " + driverDTO, id, ex);
             throw new InvalidConstraintsException(ex.getMessage());
+        } catch (ObjectOptimisticLockingFailureException ex) {
+            throw new DriverConflictException("Driver " + id + " was modified concurrently");
+        } catch (DataIntegrityViolationException ex) {
+            throw DriverService.emailConflict(ex, driverDTO.getEmail());
+        }
+        if (emailChanged) {
+            emailFilter.put(driverDTO.getEmail());
+            emailFilter.markStale(1);
         }
 
-        return mapper.map(updatedDriver, DriverDTO.class);
+        Driver savedDriver = updatedDriver;
+        DriverDTO driver = mapper.toDTO(savedDriver);
+        afterCommit(() -> {
+            locationIndex.update(savedDriver);
+            roster.update(driver);
+        });
+        driverCache().put(id, driver);
+        pageCache().clear();
+        publishPosition(id, driver.getCoordinate(), driver.getStatus());
+        return driver;
     }
 
     private static Optional<Driver> findById(DriverRepository repository, Long id) {
         return repository.findById(id);
     }
 
+    private boolean exists(Long id) {
+        Cache.ValueWrapper cached = driverCache().get(id);
+        if (cached != null) {
+            return cached.get() != null;
+        }
+        return DriverService.findById(repository, id).isPresent();
+    }
+
+    // a filter miss skips the lookup entirely; the unique index stays the authority and catches whatever slips past
+    private void checkEmailAvailable(String email) {
+        if (email != null && emailFilter.mightContain(email) && repository.existsByEmail(email)) {
+            throw new DuplicateEmailException("Email already registered: " + email);
+        }
+    }
+
+    private static RuntimeException emailConflict(DataIntegrityViolationException ex, String email) {
+        String cause = String.valueOf(ex.getMostSpecificCause().getMessage()).toLowerCase(Locale.ROOT);
+        if (!cause.contains(Driver.EMAIL_CONSTRAINT)) {
+            return ex;
+        }
+        return new DuplicateEmailException((email == null) ? "Email already registered" : "Email already registered: " + email);
+    }
+
+    private Cache driverCache() {
+        return cacheManager.getCache(CacheConfig.DRIVERS);
+    }
+
+    private Cache pageCache() {
+        return cacheManager.getCache(CacheConfig.DRIVER_PAGES);
+    }
+
+    @Timed("driver.service")
+    @Transactional
     public void deleteDriver(Long id) throws DriverNotFoundException {
-        if (DriverService.findById(repository, id).isPresent()) {
+        if (exists(id)) {
             repository.deleteById(id);
+            tombstoneRepository.save(new DriverTombstone(id, ZonedDateTime.now()));
+            emailFilter.markStale(1);
+            locationBuffer.discard(id);
+            afterCommit(() -> {
+                locationIndex.remove(id);
+                roster.remove(id);
+            });
+            // cached as absent, a replica that has not seen the delete yet must not bring the driver back into the cache
+            driverCache().put(id, null);
+            pageCache().clear();
+            publishPosition(id, null, OnlineStatus.OFFLINE.name());
         } else {
             throw new DriverNotFoundException("DriverNotFoundException: deleteDriver() Driver not found with ID " + id);
         }
     }
 
+    @Timed("driver.service")
+    @Transactional
+    public DriverDTO updateDriverStatus(Long id, OnlineStatus status) throws DriverNotFoundException {
+        if (status == null) {
+            throw new InvalidConstraintsException("Status must not be empty");
+        }
+        DriverDTO online = roster.get(id);
+        if (online != null && status == OnlineStatus.ONLINE) {
+            return online;
+        }
+        // a single-column update, the driver row is only read when going online without a cached copy
+        if (repository.updateStatus(id, status, ZonedDateTime.now()) == 0) {
+            throw new DriverNotFoundException("DriverNotFoundException: updateDriverStatus() Driver not found with ID " + id);
+        }
+        DriverDTO current = (online != null) ? online : driverCache().get(id, DriverDTO.class);
+        Long version;
+        if (current == null) {
+            // read after the update, so it already carries the bumped version
+            current = mapper.toDTO(DriverService.findById(repository, id)
+                    .orElseThrow(() -> new DriverNotFoundException("Driver not found with ID " + id)));
+            version = current.getVersion();
+        } else {
+            // the cached copy may be behind the row, the ETag has to match what an If-Match will be checked against
+            version = repository.findVersionById(id)
+                    .orElseThrow(() -> new DriverNotFoundException("Driver not found with ID " + id));
+        }
+        DriverDTO driver = withBufferedLocation(current).withStatus(status.name()).withVersion(version);
+        GeoCoordinate coordinate = driver.getCoordinate();
+        afterCommit(() -> {
+            roster.update(driver);
+            if (status == OnlineStatus.ONLINE && coordinate != null) {
+                locationIndex.put(id, coordinate.getLatitude(), coordinate.getLongitude());
+            } else {
+                locationIndex.remove(id);
+            }
+        });
+        driverCache().put(id, driver);
+        pageCache().clear();
+        publishPosition(id, coordinate, driver.getStatus());
+        return driver;
+    }
+
+    @Timed("driver.service")
+    @Transactional(readOnly = true)
     public List<DriverDTO> findAllDrivers(int pageNo, int pageSize, String direction, String fieldName) {
         if (!direction.equalsIgnoreCase("asc") && !direction.equalsIgnoreCase("desc")) {
             throw new InvalidConstraintsException("Invalid Direction value " + direction);
         }
+        String cacheKey = pageNo + ":" + pageSize + ":" + direction.toLowerCase() + ":" + fieldName;
+        boolean hotPage = pageNo < hotPages;
+        if (hotPage) {
+            @SuppressWarnings("unchecked")
+            List<DriverDTO> cached = pageCache().get(cacheKey, List.class);
+            if (cached != null) {
+                return cached.stream().map(this::withBufferedLocation).collect(Collectors.toList());
+            }
+        }
         Pageable paging = PageRequest.of(pageNo, pageSize, (direction.equalsIgnoreCase("asc")) ? Sort.by(fieldName).ascending() : Sort.by(fieldName).descending());
         Page<Driver> drivers = repository.findAll(paging);
-        return (drivers.hasContent()) ?
-                drivers.getContent().stream().map(driver -> mapper.map(driver, DriverDTO.class)).collect(Collectors.toList())
+        List<DriverDTO> page = (drivers.hasContent()) ?
+                drivers.getContent().stream().map(driver -> withBufferedLocation(mapper.toDTO(driver))).collect(Collectors.toList())
                 : new ArrayList<>();
+        if (hotPage) {
+            // copy-on-write, DriverLocationBuffer swaps in the positions it flushes without replacing the cached page
+            pageCache().put(cacheKey, new CopyOnWriteArrayList<>(page));
+        }
+        return page;
+    }
+
+    @Timed("driver.service")
+    @Transactional
+    public List<DriverDTO> createDrivers(List<DriverDTO> driverDTOs) {
+        Set<String> registered = findRegisteredEmails(driverDTOs.stream().map(DriverDTO::getEmail).collect(Collectors.toList()));
+        if (!registered.isEmpty()) {
+            throw new DuplicateEmailException("Email already registered: " + String.join(", ", registered));
+        }
+        List<Driver> newDrivers;
+        try {
+            newDrivers = repository.saveAll(driverDTOs.stream().map(mapper::toEntity).collect(Collectors.toList()));
+            repository.flush();
+        } catch (DataIntegrityViolationException ex) {
+            throw DriverService.emailConflict(ex, null);
+        }
+        List<DriverDTO> createdDrivers = new ArrayList<>(newDrivers.size());
+        for (Driver newDriver : newDrivers) {
+            emailFilter.put(newDriver.getEmail());
+            DriverDTO createdDriver = mapper.toDTO(newDriver);
+            driverCache().put(createdDriver.getId(), createdDriver);
+            publishPosition(createdDriver.getId(), createdDriver.getCoordinate(), createdDriver.getStatus());
+            createdDrivers.add(createdDriver);
+        }
+        afterCommit(() -> {
+            for (int i = 0; i < newDrivers.size(); i++) {
+                locationIndex.update(newDrivers.get(i));
+                roster.update(createdDrivers.get(i));
+            }
+        });
+        pageCache().clear();
+        return createdDrivers;
+    }
+
+    @Timed("driver.service")
+    @Transactional
+    public Map<Long, DriverDTO> updateDrivers(List<DriverDTO> driverDTOs) {
+        Map<Long, Driver> existing = repository.findAllById(driverDTOs.stream().map(DriverDTO::getId).collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(Driver::getId, Function.identity()));
+        ZonedDateTime now = ZonedDateTime.now();
+        List<String> changedEmails = new ArrayList<>();
+        for (DriverDTO driverDTO : driverDTOs) {
+            Driver driver = existing.get(driverDTO.getId());
+            if (driver != null) {
+                if (driverDTO.getEmail() != null && !driverDTO.getEmail().equals(driver.getEmail())) {
+                    changedEmails.add(driverDTO.getEmail());
+                }
+                mapper.copyToEntity(driverDTO, driver);
+                driver.setUpdatedDate(now);
+                locationBuffer.discard(driver.getId());
+            }
+        }
+        // managed entities are written in one flush, batched by hibernate.jdbc.batch_size, which also bumps their versions
+        try {
+            repository.flush();
+        } catch (DataIntegrityViolationException ex) {
+            throw DriverService.emailConflict(ex, null);
+        }
+        changedEmails.forEach(emailFilter::put);
+        emailFilter.markStale(changedEmails.size());
+        Map<Long, DriverDTO> updatedDrivers = new HashMap<>();
+        for (Driver driver : existing.values()) {
+            DriverDTO updatedDriver = mapper.toDTO(driver);
+            driverCache().put(driver.getId(), updatedDriver);
+            publishPosition(driver.getId(), updatedDriver.getCoordinate(), updatedDriver.getStatus());
+            updatedDrivers.put(driver.getId(), updatedDriver);
+        }
+        afterCommit(() -> {
+            for (Driver driver : existing.values()) {
+                locationIndex.update(driver);
+                roster.update(updatedDrivers.get(driver.getId()));
+            }
+        });
+        pageCache().clear();
+        return updatedDrivers;
+    }
+
+    @Timed("driver.service")
+    @Transactional
+    public Set<Long> deleteDrivers(List<Long> ids) {
+        Set<Long> existing = new HashSet<>(repository.findExistingIds(new HashSet<>(ids)));
+        if (existing.isEmpty()) {
+            return existing;
+        }
+        // before the delete takes its row locks, a flush waiting on one of them would block these discards in turn
+        existing.forEach(locationBuffer::discard);
+        repository.deleteAllByIdInBatch(existing);
+        ZonedDateTime now = ZonedDateTime.now();
+        tombstoneRepository.saveAll(existing.stream().map(id -> new DriverTombstone(id, now)).collect(Collectors.toList()));
+        emailFilter.markStale(existing.size());
+        for (Long id : existing) {
+            driverCache().put(id, null);
+            publishPosition(id, null, OnlineStatus.OFFLINE.name());
+        }
+        afterCommit(() -> existing.forEach(id -> {
+            locationIndex.remove(id);
+            roster.remove(id);
+        }));
+        pageCache().clear();
+        return existing;
+    }
+
+    @Timed("driver.service")
+    @Transactional(readOnly = true)
+    public DriverSlice findDriversAfter(String cursor, int pageSize, String direction) {
+        if (!direction.equalsIgnoreCase("asc") && !direction.equalsIgnoreCase("desc")) {
+            throw new InvalidConstraintsException("Invalid Direction value " + direction);
+        }
+        if (pageSize <= 0) {
+            throw new InvalidConstraintsException("Invalid page size " + pageSize);
+        }
+        boolean ascending = direction.equalsIgnoreCase("asc");
+        Pageable paging = PageRequest.of(0, pageSize, ascending ? Sort.by("id").ascending() : Sort.by("id").descending());
+        Slice<Driver> drivers;
+        if (cursor == null || cursor.isEmpty()) {
+            drivers = repository.findAllBy(paging);
+        } else {
+            Long lastId = DriverService.decodeCursor(cursor, ascending);
+            drivers = ascending ? repository.findByIdGreaterThan(lastId, paging) : repository.findByIdLessThan(lastId, paging);
+        }
+        List<DriverDTO> content = drivers.getContent().stream().map(driver -> withBufferedLocation(mapper.toDTO(driver))).collect(Collectors.toList());
+        String nextCursor = (drivers.hasNext() && !content.isEmpty())
+                ? DriverService.encodeCursor(content.get(content.size() - 1).getId(), ascending) : null;
+        return new DriverSlice(content, nextCursor);
+    }
+
+    static String encodeCursor(Long lastId, boolean ascending) {
+        String cursor = (ascending ? "asc:" : "desc:") + lastId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Long decodeCursor(String cursor, boolean ascending) {
+        String prefix = ascending ? "asc:" : "desc:";
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (decoded.startsWith(prefix)) {
+                return Long.parseLong(decoded.substring(prefix.length()));
+            }
+        } catch (IllegalArgumentException ex) {
+            log.info("Rejected malformed cursor {}", cursor);
+        }
+        throw new InvalidConstraintsException("Invalid cursor " + cursor);
+    }
+
+    @Timed("driver.service")
+    @Transactional(readOnly = true)
+    public List<DriverDTO> findDrivers(DriverFilter filter, int pageNo, int pageSize, String direction, String fieldName) {
+        boolean ascending = DriverService.isAscending(direction);
+        DriverService.checkFilter(filter, pageNo, pageSize);
+        if (filter.isOnlineOnly() && fieldName.equals("id")) {
+            return roster.page(ascending, null, (long) pageNo * pageSize, pageSize);
+        }
+        Pageable paging = PageRequest.of(pageNo, pageSize, ascending ? Sort.by(fieldName).ascending() : Sort.by(fieldName).descending());
+        return repository.findMatching(DriverSpecifications.matching(filter), paging).stream()
+                .map(driver -> withBufferedLocation(mapper.toDTO(driver))).collect(Collectors.toList());
+    }
+
+    @Timed("driver.service")
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> findDriverFields(DriverFilter filter, List<String> fields, int pageNo, int pageSize, String direction, String fieldName) {
+        boolean ascending = DriverService.isAscending(direction);
+        DriverService.checkFilter(filter, pageNo, pageSize);
+        Set<String> projected = new LinkedHashSet<>();
+        for (String field : fields) {
+            if (!DriverQueryRepository.PROJECTABLE_FIELDS.contains(field.trim())) {
+                throw new InvalidConstraintsException("Invalid field " + field + ", expected any of " + DriverQueryRepository.PROJECTABLE_FIELDS);
+            }
+            projected.add(field.trim());
+        }
+        Pageable paging = PageRequest.of(pageNo, pageSize, ascending ? Sort.by(fieldName).ascending() : Sort.by(fieldName).descending());
+        List<Map<String, Object>> rows = repository.findFields(DriverSpecifications.matching(filter), projected, paging);
+        if (projected.contains("coordinate")) {
+            for (Map<String, Object> row : rows) {
+                locationBuffer.get((Long) row.get("id")).ifPresent(coordinate -> row.put("coordinate", coordinate));
+            }
+        }
+        return rows;
+    }
+
+    // one read-only transaction for the whole table, each driver goes to the sink before the next row is fetched
+    @Timed("driver.service")
+    @Transactional(readOnly = true)
+    public void exportDrivers(Consumer<DriverDTO> sink) {
+        try (Stream<Driver> drivers = repository.streamAll(exportFetchSize)) {
+            drivers.forEach(driver -> sink.accept(withBufferedLocation(mapper.toDTO(driver))));
+        }
+    }
+
+    private static boolean isAscending(String direction) {
+        if (!direction.equalsIgnoreCase("asc") && !direction.equalsIgnoreCase("desc")) {
+            throw new InvalidConstraintsException("Invalid Direction value " + direction);
+        }
+        return direction.equalsIgnoreCase("asc");
+    }
+
+    private static void checkFilter(DriverFilter filter, int pageNo, int pageSize) {
+        if (pageNo < 0 || pageSize <= 0) {
+            throw new InvalidConstraintsException("Invalid page " + pageNo + " or page size " + pageSize);
+        }
+        if (filter.getMinAge() != null && filter.getMaxAge() != null && filter.getMinAge() > filter.getMaxAge()) {
+            throw new InvalidConstraintsException("Invalid age range " + filter.getMinAge() + " to " + filter.getMaxAge());
+        }
+    }
+
+    @Timed("driver.service")
+    public DriverSlice findOnlineDriversAfter(String cursor, int pageSize, String direction) {
+        if (!direction.equalsIgnoreCase("asc") && !direction.equalsIgnoreCase("desc")) {
+            throw new InvalidConstraintsException("Invalid Direction value " + direction);
+        }
+        if (pageSize <= 0) {
+            throw new InvalidConstraintsException("Invalid page size " + pageSize);
+        }
+        boolean ascending = direction.equalsIgnoreCase("asc");
+        Long lastId = (cursor == null || cursor.isEmpty()) ? null : DriverService.decodeCursor(cursor, ascending);
+        List<DriverDTO> drivers = roster.page(ascending, lastId, 0, pageSize + 1);
+        if (drivers.size() <= pageSize) {
+            return new DriverSlice(drivers, null);
+        }
+        List<DriverDTO> content = new ArrayList<>(drivers.subList(0, pageSize));
+        return new DriverSlice(content, DriverService.encodeCursor(content.get(pageSize - 1).getId(), ascending));
+    }
+
+    // kept on the primary, a lagging replica could let the watermark move past rows it has not received yet
+    @Timed("driver.service")
+    @Transactional
+    public DriverChangesDTO findChanges(String since, int limit) {
+        if (limit <= 0 || limit > maxChangesLimit) {
+            throw new InvalidConstraintsException("Invalid limit " + limit + ", expected 1 to " + maxChangesLimit);
+        }
+        ZonedDateTime now = ZonedDateTime.now();
+        // rows inside the settle window could still be joined by a slower transaction carrying an earlier timestamp
+        ZonedDateTime until = now.minus(Duration.ofMillis(changesSettleMs));
+        Watermark from;
+        if (since == null || since.isEmpty()) {
+            // a first sync lists every live driver, deletions only matter from here on
+            from = new Watermark(ZonedDateTime.ofInstant(Instant.EPOCH, ZoneOffset.UTC), 0L, until, Long.MAX_VALUE);
+        } else {
+            from = DriverService.decodeWatermark(since);
+            if (from.deletedDate.isBefore(now.minusHours(tombstoneRetentionHours))) {
+                throw new ResyncRequiredException("Watermark " + since + " is older than the tombstone retention of " + tombstoneRetentionHours + "h");
+            }
+        }
+
+        Pageable paging = PageRequest.of(0, limit + 1);
+        List<Driver> drivers = repository.findChangedSince(from.updatedDate, from.driverId, until, paging);
+        List<DriverTombstone> tombstones = tombstoneRepository.findDeletedSince(from.deletedDate, from.tombstoneId, until, paging);
+        boolean moreDrivers = drivers.size() > limit;
+        boolean moreTombstones = tombstones.size() > limit;
+        if (moreDrivers) {
+            drivers = drivers.subList(0, limit);
+        }
+        if (moreTombstones) {
+            tombstones = tombstones.subList(0, limit);
+        }
+
+        // once caught up a position moves to the end of the window, so an idle client does not age past the tombstone retention
+        Watermark next = new Watermark(from.updatedDate, from.driverId, from.deletedDate, from.tombstoneId);
+        if (moreDrivers) {
+            Driver last = drivers.get(drivers.size() - 1);
+            next.updatedDate = last.getUpdatedDate();
+            next.driverId = last.getId();
+        } else if (until.isAfter(from.updatedDate)) {
+            next.updatedDate = until;
+            next.driverId = Long.MAX_VALUE;
+        }
+        if (moreTombstones) {
+            DriverTombstone last = tombstones.get(tombstones.size() - 1);
+            next.deletedDate = last.getDeletedDate();
+            next.tombstoneId = last.getDriverId();
+        } else if (until.isAfter(from.deletedDate)) {
+            next.deletedDate = until;
+            next.tombstoneId = Long.MAX_VALUE;
+        }
+        List<DriverDTO> changed = drivers.stream().map(driver -> withBufferedLocation(mapper.toDTO(driver))).collect(Collectors.toList());
+        List<Long> deleted = tombstones.stream().map(DriverTombstone::getDriverId).collect(Collectors.toList());
+        return new DriverChangesDTO(changed, deleted, DriverService.encodeWatermark(next), moreDrivers || moreTombstones);
+    }
+
+    @Scheduled(fixedDelayString = "${driver.changes.purge-interval-ms:3600000}")
+    @Transactional
+    public void purgeTombstones() {
+        int purged = tombstoneRepository.deleteByDeletedDateBefore(ZonedDateTime.now().minusHours(tombstoneRetentionHours));
+        if (purged > 0) {
+            log.info("Purged {} driver tombstones", purged);
+        }
+    }
+
+    static String encodeWatermark(Watermark watermark) {
+        String token = "w1:" + DriverService.toMicros(watermark.updatedDate) + ":" + watermark.driverId
+                + ":" + DriverService.toMicros(watermark.deletedDate) + ":" + watermark.tombstoneId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Watermark decodeWatermark(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":");
+            if (parts.length == 5 && parts[0].equals("w1")) {
+                return new Watermark(DriverService.fromMicros(Long.parseLong(parts[1])), Long.parseLong(parts[2]),
+                        DriverService.fromMicros(Long.parseLong(parts[3])), Long.parseLong(parts[4]));
+            }
+        } catch (IllegalArgumentException | ArithmeticException | DateTimeException ex) {
+            log.info("Rejected malformed watermark {}", token);
+        }
+        throw new InvalidConstraintsException("Invalid watermark " + token);
+    }
+
+    private static long toMicros(ZonedDateTime dateTime) {
+        Instant instant = dateTime.toInstant();
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+    }
+
+    private static ZonedDateTime fromMicros(long micros) {
+        return ZonedDateTime.ofInstant(Instant.EPOCH.plus(micros, ChronoUnit.MICROS), ZoneOffset.UTC);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static final class Watermark {
+        private ZonedDateTime updatedDate;
+        private long driverId;
+        private ZonedDateTime deletedDate;
+        private long tombstoneId;
+    }
+
+    @Timed("driver.service")
+    @Transactional(readOnly = true)
+    public List<DriverDTO> findNearbyDrivers(double latitude, double longitude, double radiusKm, int limit, OnlineStatus status) {
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw new InvalidConstraintsException("Invalid coordinate " + latitude + ", " + longitude);
+        }
+        if (radiusKm <= 0 || limit <= 0) {
+            throw new InvalidConstraintsException("Invalid radius " + radiusKm + " or limit " + limit);
+        }
+        if (status != OnlineStatus.ONLINE) {
+            return findWithinRadius(latitude, longitude, radiusKm, limit, status);
+        }
+        // online drivers are served from the in-memory index and roster, which already see positions still waiting in the buffer
+        return locationIndex.findNearest(latitude, longitude, radiusKm, limit).stream()
+                .map(neighbour -> roster.get(neighbour.getDriverId()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private List<DriverDTO> findWithinRadius(double latitude, double longitude, double radiusKm, int limit, OnlineStatus status) {
+        double latitudeDelta = Math.toDegrees(radiusKm / DriverLocationIndex.EARTH_RADIUS_KM);
+        double minLatitude = latitude - latitudeDelta;
+        double maxLatitude = latitude + latitudeDelta;
+        double minLongitude = -180;
+        double maxLongitude = 180;
+        // near a pole or across the antimeridian the longitude band is left open and only the latitude band narrows the scan
+        if (minLatitude > -90 && maxLatitude < 90) {
+            double longitudeDelta = Math.toDegrees(Math.asin(Math.sin(radiusKm / DriverLocationIndex.EARTH_RADIUS_KM) / Math.cos(Math.toRadians(latitude))));
+            if (longitude - longitudeDelta >= -180 && longitude + longitudeDelta <= 180) {
+                minLongitude = longitude - longitudeDelta;
+                maxLongitude = longitude + longitudeDelta;
+            }
+        }
+        return repository.findWithinRadius(latitude, longitude, radiusKm, minLatitude, minLongitude, maxLatitude, maxLongitude, status.name(), limit)
+                .stream().map(driver -> withBufferedLocation(mapper.toDTO(driver))).collect(Collectors.toList());
+    }
+
+    @Timed("driver.service")
+    @Transactional(readOnly = true)
+    public List<DriverDTO> findDriversInBox(BoundingBox box, int limit) {
+        if (!box.isValid()) {
+            throw new InvalidConstraintsException("Invalid bounding box " + box);
+        }
+        if (limit <= 0) {
+            throw new InvalidConstraintsException("Invalid limit " + limit);
+        }
+        Pageable paging = PageRequest.of(0, limit, Sort.by("id"));
+        Slice<Driver> drivers = (box.getMinLongitude() <= box.getMaxLongitude())
+                ? repository.findInBoundingBox(box.getMinLatitude(), box.getMinLongitude(), box.getMaxLatitude(), box.getMaxLongitude(), paging)
+                : repository.findInBoundingBoxAcrossAntimeridian(box.getMinLatitude(), box.getMinLongitude(), box.getMaxLatitude(), box.getMaxLongitude(), paging);
+        return drivers.getContent().stream().map(driver -> withBufferedLocation(mapper.toDTO(driver))).collect(Collectors.toList());
+    }
+
+    @Timed("driver.service")
+    public void updateDriverLocation(Long id, GeoCoordinate coordinate) throws DriverNotFoundException {
+        if (!locationIndex.contains(id) && !repository.existsById(id)) {
+            throw new DriverNotFoundException("DriverNotFoundException: updateDriverLocation() Driver not found with ID " + id);
+        }
+        recordLocation(id, coordinate);
+    }
+
+    @Timed("driver.service")
+    public List<Long> updateDriverLocations(List<DriverLocationDTO> locations) {
+        Set<Long> unindexed = locations.stream().map(DriverLocationDTO::getId)
+                .filter(id -> !locationIndex.contains(id)).collect(Collectors.toSet());
+        Set<Long> known = unindexed.isEmpty() ? new HashSet<>() : new HashSet<>(repository.findExistingIds(unindexed));
+        List<Long> unknown = new ArrayList<>();
+        for (DriverLocationDTO location : locations) {
+            if (unindexed.contains(location.getId()) && !known.contains(location.getId())) {
+                unknown.add(location.getId());
+            } else {
+                recordLocation(location.getId(), location.getCoordinate());
+            }
+        }
+        return unknown;
+    }
+
+    private void recordLocation(Long id, GeoCoordinate coordinate) {
+        locationBuffer.record(id, coordinate);
+        // the next read re-caches the driver with this position, so it is not lost once the buffer flushes
+        driverCache().evict(id);
+        if (locationIndex.contains(id)) {
+            locationIndex.put(id, coordinate.getLatitude(), coordinate.getLongitude());
+        }
+        roster.moveTo(id, coordinate);
+        publishPosition(id, coordinate, null);
+    }
+
+    // subscribers only see committed changes, the same rule the transaction aware caches follow
+    private void publishPosition(Long id, GeoCoordinate coordinate, String status) {
+        DriverPositionDTO position = new DriverPositionDTO(id, coordinate, status, Instant.now());
+        afterCommit(() -> positionHub.publish(position));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private DriverDTO withBufferedLocation(DriverDTO driverDTO) {
+        if (driverDTO.getId() == null) {
+            return driverDTO;
+        }
+        return locationBuffer.get(driverDTO.getId()).map(driverDTO::withCoordinate).orElse(driverDTO);
     }
 }
@@ -0,0 +1,152 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.util;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.dto.DriverDTO;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+// Writes drivers to the output one at a time without holding them, the password is never exported.
+// Closing flushes what is buffered and leaves the output itself open.
+public abstract class DriverExportWriter implements Closeable {
+
+    static final String CSV_HEADER = "id,firstName,lastName,email,age,latitude,longitude,status,version";
+
+    public static DriverExportWriter create(DriverFileFormat format, OutputStream out) throws IOException {
+        return (format == DriverFileFormat.CSV) ? new CsvWriter(out) : new NdjsonWriter(out);
+    }
+
+    // unchecked so the writer can be handed out as a plain Consumer, the cause is the IOException from the output
+    public void write(DriverDTO driver) {
+        try {
+            writeDriver(driver);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    abstract void writeDriver(DriverDTO driver) throws IOException;
+
+    private static class NdjsonWriter extends DriverExportWriter {
+
+        private final JsonGenerator generator;
+
+        NdjsonWriter(OutputStream out) throws IOException {
+            generator = JsonMapper.getObjectMapper().getFactory().createGenerator(out, JsonEncoding.UTF8);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+        }
+
+        // same fields the API returns, null ones left out like DriverDTO does
+        @Override
+        void writeDriver(DriverDTO driver) throws IOException {
+            generator.writeStartObject();
+            if (driver.getId() != null) {
+                generator.writeNumberField("id", driver.getId());
+            }
+            writeStringField("firstName", driver.getFirstName());
+            writeStringField("lastName", driver.getLastName());
+            writeStringField("email", driver.getEmail());
+            generator.writeNumberField("age", driver.getAge());
+            GeoCoordinate coordinate = driver.getCoordinate();
+            if (coordinate != null) {
+                generator.writeObjectFieldStart("coordinate");
+                generator.writeNumberField(GeoCoordinateDerializer.LATITUDE, coordinate.getLatitude());
+                generator.writeNumberField(GeoCoordinateDerializer.LONGITUDE, coordinate.getLongitude());
+                generator.writeEndObject();
+            }
+            writeStringField("status", driver.getStatus());
+            if (driver.getVersion() != null) {
+                generator.writeNumberField("version", driver.getVersion());
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        private void writeStringField(String name, String value) throws IOException {
+            if (value != null) {
+                generator.writeStringField(name, value);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    private static class CsvWriter extends DriverExportWriter {
+
+        private final Writer writer;
+
+        CsvWriter(OutputStream out) throws IOException {
+            writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write(CSV_HEADER);
+            writer.write("\r\n");
+        }
+
+        @Override
+        void writeDriver(DriverDTO driver) throws IOException {
+            GeoCoordinate coordinate = driver.getCoordinate();
+            writer.write(driver.getId() == null ? "" : driver.getId().toString());
+            writer.write(',');
+            writer.write(CsvWriter.escape(driver.getFirstName()));
+            writer.write(',');
+            writer.write(CsvWriter.escape(driver.getLastName()));
+            writer.write(',');
+            writer.write(CsvWriter.escape(driver.getEmail()));
+            writer.write(',');
+            writer.write(Integer.toString(driver.getAge()));
+            writer.write(',');
+            writer.write(coordinate == null ? "" : Double.toString(coordinate.getLatitude()));
+            writer.write(',');
+            writer.write(coordinate == null ? "" : Double.toString(coordinate.getLongitude()));
+            writer.write(',');
+            writer.write(CsvWriter.escape(driver.getStatus()));
+            writer.write(',');
+            writer.write(driver.getVersion() == null ? "" : driver.getVersion().toString());
+            writer.write("\r\n");
+        }
+
+        // RFC 4180 quoting, only for values that need it
+        static String escape(String value) {
+            if (value == null) {
+                return "";
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\r') < 0 && value.indexOf('\n') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.util;
+
+import lombok.Getter;
+import org.sharing.car.exception.InvalidConstraintsException;
+
+// File formats drivers are exported to and imported from
+public enum DriverFileFormat {
+    NDJSON("application/x-ndjson"), CSV("text/csv");
+
+    @Getter
+    private final String contentType;
+
+    DriverFileFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getExtension() {
+        return name().toLowerCase();
+    }
+
+    public static DriverFileFormat of(String name) {
+        for (DriverFileFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new InvalidConstraintsException("Invalid format " + name + ", expected ndjson or csv");
+    }
+
+    // anything not ending in .csv is read as NDJSON
+    public static DriverFileFormat ofFileName(String fileName) {
+        return fileName.toLowerCase().endsWith("." + CSV.getExtension()) ? CSV : NDJSON;
+    }
+}
@@ -18,24 +18,71 @@ package org.sharing.car.util;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import org.sharing.car.domainvalue.GeoCoordinate;
 
 import java.io.IOException;
 
+// Reads {"latitude":..,"longitude":..} or the compact [latitude,longitude] form straight off the token stream
 public class GeoCoordinateDerializer extends StdDeserializer<GeoCoordinate> {
 
-    protected GeoCoordinateDerializer() {
+    static final String LATITUDE = "latitude";
+    static final String LONGITUDE = "longitude";
+
+    public GeoCoordinateDerializer() {
         super(GeoCoordinate.class);
     }
 
     @Override
     public GeoCoordinate deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException, JsonProcessingException {
-        JsonNode node = jsonParser.getCodec().readTree(jsonParser);
-        double latitude = node.get("latitude").asDouble();
-        double longitude = node.get("longitude").asDouble();
+        JsonToken token = jsonParser.currentToken();
+        if (token == JsonToken.START_ARRAY) {
+            return deserializeArray(jsonParser, deserializationContext);
+        }
+        if (token == JsonToken.START_OBJECT) {
+            token = jsonParser.nextToken();
+        }
+
+        double latitude = 0;
+        double longitude = 0;
+        boolean hasLatitude = false;
+        boolean hasLongitude = false;
+        for (; token == JsonToken.FIELD_NAME; token = jsonParser.nextToken()) {
+            String field = jsonParser.getCurrentName();
+            jsonParser.nextToken();
+            if (LATITUDE.equals(field)) {
+                latitude = _parseDoublePrimitive(jsonParser, deserializationContext);
+                hasLatitude = true;
+            } else if (LONGITUDE.equals(field)) {
+                longitude = _parseDoublePrimitive(jsonParser, deserializationContext);
+                hasLongitude = true;
+            } else {
+                jsonParser.skipChildren();
+            }
+        }
+        if (token != JsonToken.END_OBJECT) {
+            return (GeoCoordinate) deserializationContext.handleUnexpectedToken(GeoCoordinate.class, jsonParser);
+        }
+        if (!hasLatitude || !hasLongitude) {
+            return deserializationContext.reportInputMismatch(this, "GeoCoordinate requires both latitude and longitude");
+        }
+        return new GeoCoordinate(latitude, longitude);
+    }
+
+    private GeoCoordinate deserializeArray(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+        if (jsonParser.nextToken() == JsonToken.END_ARRAY) {
+            return deserializationContext.reportInputMismatch(this, "GeoCoordinate array requires [latitude, longitude]");
+        }
+        double latitude = _parseDoublePrimitive(jsonParser, deserializationContext);
+        if (jsonParser.nextToken() == JsonToken.END_ARRAY) {
+            return deserializationContext.reportInputMismatch(this, "GeoCoordinate array requires [latitude, longitude]");
+        }
+        double longitude = _parseDoublePrimitive(jsonParser, deserializationContext);
+        if (jsonParser.nextToken() != JsonToken.END_ARRAY) {
+            return deserializationContext.reportInputMismatch(this, "GeoCoordinate array must hold exactly [latitude, longitude]");
+        }
         return new GeoCoordinate(latitude, longitude);
     }
 }
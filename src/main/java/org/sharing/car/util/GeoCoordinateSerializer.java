@@ -0,0 +1,55 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.sharing.car.domainvalue.GeoCoordinate;
+
+import java.io.IOException;
+
+public class GeoCoordinateSerializer extends StdSerializer<GeoCoordinate> {
+
+    private final boolean compact;
+
+    public GeoCoordinateSerializer() {
+        this(false);
+    }
+
+    // compact writes [latitude, longitude], which GeoCoordinateDerializer reads back as well
+    public GeoCoordinateSerializer(boolean compact) {
+        super(GeoCoordinate.class);
+        this.compact = compact;
+    }
+
+    @Override
+    public void serialize(GeoCoordinate coordinate, JsonGenerator jsonGenerator, SerializerProvider serializerProvider) throws IOException {
+        if (compact) {
+            jsonGenerator.writeStartArray(coordinate, 2);
+            jsonGenerator.writeNumber(coordinate.getLatitude());
+            jsonGenerator.writeNumber(coordinate.getLongitude());
+            jsonGenerator.writeEndArray();
+            return;
+        }
+        jsonGenerator.writeStartObject(coordinate);
+        jsonGenerator.writeNumberField(GeoCoordinateDerializer.LATITUDE, coordinate.getLatitude());
+        jsonGenerator.writeNumberField(GeoCoordinateDerializer.LONGITUDE, coordinate.getLongitude());
+        jsonGenerator.writeEndObject();
+    }
+}
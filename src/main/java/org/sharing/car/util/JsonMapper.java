@@ -16,46 +16,83 @@
 
 package org.sharing.car.util;
 
-import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParseException;
-import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonMappingException;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
 import lombok.extern.slf4j.Slf4j;
 import org.sharing.car.domainvalue.GeoCoordinate;
-import org.sharing.car.dto.DriverDTO;
 import org.sharing.car.exception.InvalidJsonException;
 
 import java.io.IOException;
-import java.util.List;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 public class JsonMapper {
-    public static <T> T mapListFromJson(String json, TypeReference<List<DriverDTO>> clazz)
+
+    // Configured once and shared, so Jackson's serializer and deserializer caches survive between calls.
+    // The same instance backs Spring MVC through the ObjectMapper bean in CarShareServiceServerApplication.
+    private static final ObjectMapper OBJECT_MAPPER = configure(new ObjectMapper(), false);
+    // Binary clients are new, so they get coordinates as [latitude, longitude] and Smile also back-references repeated values.
+    private static final ObjectMapper SMILE_MAPPER = configure(new ObjectMapper(SmileFactory.builder()
+            .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES).build()), true);
+    private static final ObjectMapper CBOR_MAPPER = configure(new ObjectMapper(new CBORFactory()), true);
+    private static final Map<JavaType, ObjectReader> READERS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
+
+    private JsonMapper() {
+    }
+
+    public static ObjectMapper getObjectMapper() {
+        return OBJECT_MAPPER;
+    }
+
+    public static ObjectMapper getSmileMapper() {
+        return SMILE_MAPPER;
+    }
+
+    public static ObjectMapper getCborMapper() {
+        return CBOR_MAPPER;
+    }
+
+    public static ObjectReader readerFor(JavaType type) {
+        return READERS.computeIfAbsent(type, OBJECT_MAPPER::readerFor);
+    }
+
+    public static ObjectReader readerFor(Class<?> clazz) {
+        return readerFor(OBJECT_MAPPER.constructType(clazz));
+    }
+
+    public static ObjectWriter writerFor(Class<?> clazz) {
+        return WRITERS.computeIfAbsent(clazz, OBJECT_MAPPER::writerFor);
+    }
+
+    public static <T> T mapListFromJson(String json, TypeReference<T> type)
             throws JsonParseException, JsonMappingException, IOException {
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.registerModule(new JavaTimeModule());
-        objectMapper.registerModule(new SimpleModule().addDeserializer(GeoCoordinate.class, new GeoCoordinateDerializer()));
-        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        return (T) objectMapper.readValue(json, clazz);
+        return readerFor(OBJECT_MAPPER.constructType(type)).readValue(json);
     }
 
     public static String serialize(Object obj) {
         String json = null;
 
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.registerModule(new JavaTimeModule());
-            mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-            json = mapper.writeValueAsString(obj);
+            json = writerOf(obj).writeValueAsString(obj);
         } catch (JsonProcessingException jpe) {
             log.info(jpe.getOriginalMessage());
             throw new InvalidJsonException(jpe);
@@ -64,13 +101,21 @@ public class JsonMapper {
         return json;
     }
 
+    public static void serialize(Object obj, OutputStream outputStream) {
+        try {
+            writerOf(obj).writeValue(outputStream, obj);
+        } catch (JsonProcessingException jpe) {
+            log.info(jpe.getOriginalMessage());
+            throw new InvalidJsonException(jpe);
+        } catch (IOException ex) {
+            throw new InvalidJsonException("Failed to write JSON", ex);
+        }
+    }
+
     public static Object deserialize(Class clazz, String json) {
         Object obj = null;
         try {
-            obj = new ObjectMapper().registerModule(new JavaTimeModule()).registerModule(new ParameterNamesModule())
-                    .registerModule(new SimpleModule().addDeserializer(GeoCoordinate.class, new GeoCoordinateDerializer()))
-                    .registerModule(new Jdk8Module()).disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
-                    .readerFor(clazz).readValue(json);
+            obj = readerFor(clazz).readValue(json);
         } catch (JsonProcessingException jpe) {
             log.info(jpe.getOriginalMessage());
             throw new InvalidJsonException(jpe);
@@ -79,5 +124,20 @@ public class JsonMapper {
         return obj;
     }
 
+    private static ObjectWriter writerOf(Object obj) {
+        return (obj == null) ? OBJECT_MAPPER.writer() : writerFor(obj.getClass());
+    }
 
+    private static ObjectMapper configure(ObjectMapper objectMapper, boolean compactCoordinates) {
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.registerModule(new Jdk8Module());
+        objectMapper.registerModule(new ParameterNamesModule());
+        objectMapper.registerModule(new SimpleModule()
+                .addSerializer(GeoCoordinate.class, new GeoCoordinateSerializer(compactCoordinates))
+                .addDeserializer(GeoCoordinate.class, new GeoCoordinateDerializer()));
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        objectMapper.disable(MapperFeature.DEFAULT_VIEW_INCLUSION);
+        return objectMapper;
+    }
 }
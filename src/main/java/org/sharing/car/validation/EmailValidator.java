@@ -0,0 +1,148 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.validation;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
+
+// Single left-to-right scan, the length cap comes first so no input costs more than MAX_LENGTH characters of work.
+// Accepts a dot-atom or quoted local part, and a domain of at least two labels or an IPv4 address literal.
+public class EmailValidator implements ConstraintValidator<ValidEmail, String> {
+
+    // RFC 5321 limits: the forward path, the local part and a DNS label
+    static final int MAX_LENGTH = 254;
+    static final int MAX_LOCAL_LENGTH = 64;
+    static final int MAX_LABEL_LENGTH = 63;
+
+    // a missing email is for @NotNull to report, as with the built-in constraints
+    @Override
+    public boolean isValid(String value, ConstraintValidatorContext context) {
+        return value == null || EmailValidator.isValid(value);
+    }
+
+    public static boolean isValid(String email) {
+        if (email == null || email.isEmpty() || email.length() > MAX_LENGTH) {
+            return false;
+        }
+        int at = EmailValidator.localPartEnd(email);
+        if (at <= 0 || at > MAX_LOCAL_LENGTH || at == email.length() - 1) {
+            return false;
+        }
+        return (email.charAt(at + 1) == '[') ? EmailValidator.isAddressLiteral(email, at + 2) : EmailValidator.isDomain(email, at + 1);
+    }
+
+    // index of the '@' after a well formed local part, -1 otherwise
+    private static int localPartEnd(String email) {
+        int length = email.length();
+        if (email.charAt(0) == '"') {
+            for (int i = 1; i < length; i++) {
+                char c = email.charAt(i);
+                if (c == '\\') {
+                    if (++i == length || !EmailValidator.isPrintable(email.charAt(i))) {
+                        return -1;
+                    }
+                } else if (c == '"') {
+                    return (i + 1 < length && email.charAt(i + 1) == '@') ? i + 1 : -1;
+                } else if (!EmailValidator.isPrintable(c)) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+        boolean afterAtom = false;
+        for (int i = 0; i < length; i++) {
+            char c = email.charAt(i);
+            if (c == '@') {
+                return afterAtom ? i : -1;
+            } else if (c == '.') {
+                if (!afterAtom) {
+                    return -1;
+                }
+                afterAtom = false;
+            } else if (EmailValidator.isAtext(c)) {
+                afterAtom = true;
+            } else {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isDomain(String email, int start) {
+        int length = email.length();
+        int labels = 0;
+        int labelStart = start;
+        for (int i = start; i <= length; i++) {
+            char c = (i < length) ? email.charAt(i) : '.';
+            if (c == '.') {
+                int labelLength = i - labelStart;
+                if (labelLength == 0 || labelLength > MAX_LABEL_LENGTH || email.charAt(labelStart) == '-' || email.charAt(i - 1) == '-') {
+                    return false;
+                }
+                labels++;
+                labelStart = i + 1;
+            } else if (!EmailValidator.isLabelChar(c)) {
+                return false;
+            }
+        }
+        return labels >= 2;
+    }
+
+    private static boolean isAddressLiteral(String email, int start) {
+        int end = email.length() - 1;
+        if (end <= start || email.charAt(end) != ']') {
+            return false;
+        }
+        int octets = 0;
+        int value = 0;
+        int digits = 0;
+        for (int i = start; i <= end; i++) {
+            char c = email.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (++digits > 3) {
+                    return false;
+                }
+            } else if (c == '.' || i == end) {
+                if (digits == 0 || value > 255) {
+                    return false;
+                }
+                octets++;
+                value = 0;
+                digits = 0;
+            } else {
+                return false;
+            }
+        }
+        return octets == 4;
+    }
+
+    // RFC 5322 atext, plus anything outside ASCII as the built-in @Email allows
+    private static boolean isAtext(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c >= 0x80
+                || "!#$%&'*+/=?^_`{|}~-".indexOf(c) >= 0;
+    }
+
+    private static boolean isLabelChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c >= 0x80;
+    }
+
+    private static boolean isPrintable(char c) {
+        return c >= 0x20 && c < 0x7f;
+    }
+}
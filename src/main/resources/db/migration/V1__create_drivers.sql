@@ -0,0 +1,45 @@
+--
+--    Copyright 2021 Bhaskar Gogoi
+--
+--    Licensed under the Apache License, Version 2.0 (the "License");
+--    you may not use this file except in compliance with the License.
+--    You may obtain a copy of the License at
+--
+--        http://www.apache.org/licenses/LICENSE-2.0
+--
+--    Unless required by applicable law or agreed to in writing, software
+--    distributed under the License is distributed on an "AS IS" BASIS,
+--    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--    See the License for the specific language governing permissions and
+--    limitations under the License.
+--
+
+create sequence driver_sequence start with 1 increment by 50;
+
+create table drivers (
+    id           bigint           not null,
+    first_name   varchar(255)     not null,
+    last_name    varchar(255)     not null,
+    email        varchar(255)     not null,
+    password     varchar(255)     not null,
+    age          integer          not null,
+    latitude     double precision,
+    longitude    double precision,
+    status       varchar(255)     not null,
+    version      bigint           not null default 0,
+    created_date timestamp        not null,
+    updated_date timestamp        not null,
+    primary key (id)
+);
+
+create index idx_drivers_location on drivers (latitude, longitude);
+create index idx_drivers_status on drivers (status);
+create index idx_drivers_updated on drivers (updated_date, id);
+
+create table driver_tombstones (
+    driver_id    bigint    not null,
+    deleted_date timestamp not null,
+    primary key (driver_id)
+);
+
+create index idx_driver_tombstones_deleted on driver_tombstones (deleted_date, driver_id);
@@ -0,0 +1,24 @@
+--
+--    Copyright 2021 Bhaskar Gogoi
+--
+--    Licensed under the Apache License, Version 2.0 (the "License");
+--    you may not use this file except in compliance with the License.
+--    You may obtain a copy of the License at
+--
+--        http://www.apache.org/licenses/LICENSE-2.0
+--
+--    Unless required by applicable law or agreed to in writing, software
+--    distributed under the License is distributed on an "AS IS" BASIS,
+--    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--    See the License for the specific language governing permissions and
+--    limitations under the License.
+--
+
+-- single row bumped on the primary, the copy a replica holds tells how far behind it is
+create table replica_heartbeat (
+    id   integer   not null,
+    beat timestamp not null,
+    primary key (id)
+);
+
+insert into replica_heartbeat (id, beat) values (1, current_timestamp);
@@ -0,0 +1,76 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.domainvalue.OnlineStatus;
+import org.sharing.car.entity.Driver;
+import org.sharing.car.repository.DriverRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+// boots the prod profile on a throwaway database file, startup fails if the migrations and the entities disagree
+@SpringBootTest(properties = "driver.reactive.enabled=false")
+@ActiveProfiles("prod")
+@DirtiesContext
+class ProductionProfileTests {
+
+	@TempDir
+	static Path dataDir;
+
+	@DynamicPropertySource
+	static void database(DynamicPropertyRegistry registry) {
+		registry.add("spring.datasource.url", () -> "jdbc:h2:file:" + dataDir.resolve("carshare") + ";QUERY_CACHE_SIZE=256");
+	}
+
+	@Autowired
+	private Flyway flyway;
+
+	@Autowired
+	private DriverRepository repository;
+
+	@Test
+	void migrationsAreApplied() {
+		assertEquals("3", flyway.info().current().getVersion().getVersion());
+		assertEquals(0, flyway.info().pending().length);
+	}
+
+	@Test
+	void driversArePersistedAgainstTheMigratedSchema() {
+		Driver saved = repository.saveAndFlush(new Driver("John", "Doe", "john.doe@gmail.com", "johnDoe",
+				35, new GeoCoordinate(52.52, 13.40), OnlineStatus.ONLINE));
+
+		Driver found = repository.findById(saved.getId()).orElse(null);
+		assertNotNull(found);
+		assertEquals(0L, found.getVersion());
+		assertEquals(52.52, found.getCoordinate().getLatitude());
+	}
+
+}
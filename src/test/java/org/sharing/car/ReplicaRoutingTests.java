@@ -0,0 +1,142 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sharing.car.config.ReplicaLagMonitor;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.dto.DriverDTO;
+import org.sharing.car.exception.DriverNotFoundException;
+import org.sharing.car.repository.DriverRepository;
+import org.sharing.car.service.DriverService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// two unrelated in-memory databases stand in for primary and replica, rows only the replica holds show where a read went
+@SpringBootTest(properties = {
+		"driver.reactive.enabled=false",
+		"spring.datasource.url=" + ReplicaRoutingTests.PRIMARY_URL,
+		"driver.datasource.replica.enabled=true",
+		"driver.datasource.replica.url=" + ReplicaRoutingTests.REPLICA_URL,
+		"driver.datasource.replica.max-lag-ms=1000",
+		"driver.datasource.replica.lag-check-interval-ms=3600000"
+})
+@ActiveProfiles("prod")
+@DirtiesContext
+class ReplicaRoutingTests {
+
+	static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+	static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+	static {
+		Flyway.configure().dataSource(REPLICA_URL, "admin", "share").load().migrate();
+	}
+
+	@Autowired
+	@Qualifier("primaryDataSource")
+	private DataSource primaryDataSource;
+
+	@Autowired
+	@Qualifier("replicaDataSource")
+	private DataSource replicaDataSource;
+
+	@Autowired
+	private ReplicaLagMonitor lagMonitor;
+
+	@Autowired
+	private DriverService driverService;
+
+	@Autowired
+	private DriverRepository repository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private JdbcTemplate primary;
+	private JdbcTemplate replica;
+
+	@BeforeEach
+	void setUp() {
+		primary = new JdbcTemplate(primaryDataSource);
+		replica = new JdbcTemplate(replicaDataSource);
+		replica.update("delete from drivers");
+	}
+
+	@Test
+	void readOnlyTransactionsGoToTheReplica() {
+		insertReplicaOnlyDriver(900L);
+		catchUp();
+		assertTrue(lagMonitor.isReplicaUsable());
+		assertEquals("Replica", driverService.findDriverById(900L).getFirstName());
+	}
+
+	@Test
+	void writesAndReadWriteTransactionsStayOnThePrimary() {
+		insertReplicaOnlyDriver(901L);
+		catchUp();
+		Boolean seen = new TransactionTemplate(transactionManager).execute(status -> repository.existsById(901L));
+		assertEquals(Boolean.FALSE, seen);
+
+		DriverDTO created = driverService.createDriver(new DriverDTO(null, "John", "Doe", "john.doe@gmail.com", "johnDoe",
+				35, new GeoCoordinate(52.52, 13.40), "ONLINE"));
+		assertEquals(1, primary.queryForObject("select count(*) from drivers where id = ?", Integer.class, created.getId()));
+		assertEquals(0, replica.queryForObject("select count(*) from drivers where id = ?", Integer.class, created.getId()));
+	}
+
+	@Test
+	void laggingReplicaFallsBackToThePrimary() {
+		insertReplicaOnlyDriver(902L);
+		Timestamp beat = primary.queryForObject("select beat from replica_heartbeat where id = 1", Timestamp.class);
+		replica.update("update replica_heartbeat set beat = ? where id = 1", new Timestamp(beat.getTime() - 5000));
+		lagMonitor.check();
+		assertFalse(lagMonitor.isReplicaUsable());
+		assertThrows(DriverNotFoundException.class, () -> driverService.findDriverById(902L));
+
+		catchUp();
+		assertEquals("Replica", driverService.findDriverById(902L).getFirstName());
+	}
+
+	private void insertReplicaOnlyDriver(Long id) {
+		replica.update("insert into drivers (id, first_name, last_name, email, password, age, latitude, longitude, status, version, created_date, updated_date) "
+				+ "values (?, 'Replica', 'Only', 'replica@gmail.com', 'replica123', 40, 48.13, 11.58, 'OFFLINE', 0, current_timestamp, current_timestamp)", id);
+	}
+
+	// copies the last beat across as replication would, the next check then measures no lag
+	private void catchUp() {
+		Timestamp beat = primary.queryForObject("select beat from replica_heartbeat where id = 1", Timestamp.class);
+		replica.update("update replica_heartbeat set beat = ? where id = 1", beat);
+		lagMonitor.check();
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.benchmark;
+
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.domainvalue.OnlineStatus;
+import org.sharing.car.dto.DriverDTO;
+import org.sharing.car.dto.DriverUpdationDTO;
+import org.sharing.car.entity.Driver;
+import org.sharing.car.mapper.DriverMapper;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DriverMappingBenchmark {
+
+    private ModelMapper modelMapper;
+    private DriverMapper driverMapper;
+    private Driver driver;
+    private DriverDTO driverDTO;
+    private DriverUpdationDTO driverUpdationDTO;
+
+    @Setup
+    public void setUp() {
+        modelMapper = new ModelMapper();
+        driverMapper = new DriverMapper();
+        driver = new Driver("Allan", "Hufflepuff", "ahufflepuff@hotmail.com", "hotmail123", 43, new GeoCoordinate(35.32, 87.23), OnlineStatus.ONLINE);
+        driver.setId(1L);
+        driverDTO = new DriverDTO(1L, "Allan", "Hufflepuff", "ahufflepuff@hotmail.com", "hotmail123", 43, new GeoCoordinate(35.32, 87.23), "ONLINE");
+        driverUpdationDTO = new DriverUpdationDTO(1L, "Allan", "Hufflepuff", "ahufflepuff@hotmail.com", "hotmail123", 43, new GeoCoordinate(35.32, 87.23), OnlineStatus.ONLINE);
+    }
+
+    @Benchmark
+    public DriverDTO modelMapperEntityToDTO() {
+        return modelMapper.map(driver, DriverDTO.class);
+    }
+
+    @Benchmark
+    public DriverDTO driverMapperEntityToDTO() {
+        return driverMapper.toDTO(driver);
+    }
+
+    @Benchmark
+    public Driver modelMapperDTOToEntity() {
+        return modelMapper.map(driverDTO, Driver.class);
+    }
+
+    @Benchmark
+    public Driver driverMapperDTOToEntity() {
+        return driverMapper.toEntity(driverDTO);
+    }
+
+    @Benchmark
+    public DriverDTO modelMapperUpdationToDTO() {
+        return modelMapper.map(driverUpdationDTO, DriverDTO.class);
+    }
+
+    @Benchmark
+    public DriverDTO driverMapperUpdationToDTO() {
+        return driverMapper.toDTO(driverUpdationDTO);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.sharing.car.CarShareServiceServerApplication;
+import org.sharing.car.domainvalue.BoundingBox;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.domainvalue.OnlineStatus;
+import org.sharing.car.dto.DriverDTO;
+import org.sharing.car.dto.DriverSlice;
+import org.sharing.car.entity.Driver;
+import org.sharing.car.repository.DriverRepository;
+import org.sharing.car.service.DriverService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DriverServiceBenchmark {
+
+    private static final int DRIVERS = 10_000;
+
+    @Param({"20", "100", "500"})
+    private int pageSize;
+
+    private ConfigurableApplicationContext context;
+    private DriverService driverService;
+    private int pages;
+    private int pageNo;
+    private String cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SpringApplication application = new SpringApplication(CarShareServiceServerApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        application.setDefaultProperties(Map.of(
+                "spring.jpa.show-sql", "false",
+                "logging.level.root", "WARN"));
+        context = application.run();
+        driverService = context.getBean(DriverService.class);
+
+        DriverRepository repository = context.getBean(DriverRepository.class);
+        List<Driver> drivers = new ArrayList<>(DRIVERS);
+        for (int i = 0; i < DRIVERS; i++) {
+            drivers.add(new Driver("First" + i, "Last" + i, "driver" + i + "@carshare.org", "secret" + i, 20 + i % 60,
+                    new GeoCoordinate(-60 + (i % 120), -170 + (i % 340)), (i % 3 == 0) ? OnlineStatus.OFFLINE : OnlineStatus.ONLINE));
+        }
+        repository.saveAll(drivers);
+        pages = DRIVERS / pageSize;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<DriverDTO> findFirstPage() {
+        return driverService.findAllDrivers(0, pageSize, "asc", "id");
+    }
+
+    @Benchmark
+    public List<DriverDTO> findRollingPage() {
+        pageNo = (pageNo + 1) % pages;
+        return driverService.findAllDrivers(pageNo, pageSize, "asc", "id");
+    }
+
+    @Benchmark
+    public DriverSlice findRollingSlice() {
+        DriverSlice slice = driverService.findDriversAfter(cursor, pageSize, "asc");
+        cursor = slice.getNextCursor();
+        return slice;
+    }
+
+    @Benchmark
+    public List<DriverDTO> findInBox() {
+        return driverService.findDriversInBox(new BoundingBox(0, 0, 10, 10), pageSize);
+    }
+
+    @Benchmark
+    public List<DriverDTO> findOfflineWithinRadius() {
+        return driverService.findNearbyDrivers(5, 5, 500, pageSize, OnlineStatus.OFFLINE);
+    }
+}
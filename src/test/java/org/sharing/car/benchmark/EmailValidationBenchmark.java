@@ -0,0 +1,84 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.domainvalue.OnlineStatus;
+import org.sharing.car.dto.DriverUpdationDTO;
+import org.sharing.car.validation.EmailValidator;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmailValidationBenchmark {
+
+    // the @Email regexp DriverUpdationDTO carried before EmailValidator replaced it
+    private static final Pattern LEGACY_EMAIL = Pattern.compile("(?:[a-z0-9!#$%&'*+/=?^_`{|}~-]+(?:\\.[a-z0-9!#$%&'*+/=?^_`{|}~-]+)*|\"(?:[\\x01-\\x08\\x0b\\x0c\\x0e-\\x1f\\x21\\x23-\\x5b\\x5d-\\x7f]|\\\\[\\x01-\\x09\\x0b\\x0c\\x0e-\\x7f])*\")@" +
+            "(?:(?:[a-z0-9](?:[a-z0-9-]*[a-z0-9])?\\.)+[a-z0-9](?:[a-z0-9-]*[a-z0-9])?|\\[(?:(?:25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)\\.){3}(?:25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?|[a-z0-9-]*[a-z0-9]" +
+            ":(?:[\\x01-\\x08\\x0b\\x0c\\x0e-\\x1f\\x21-\\x5a\\x53-\\x7f]|\\\\[\\x01-\\x09\\x0b\\x0c\\x0e-\\x7f])+)\\])");
+
+    // typical is a real address; the other two are crafted to backtrack, kept short enough not to overflow the regex stack
+    @Param({"typical", "hyphens", "labels"})
+    private String input;
+
+    private String email;
+    private Validator validator;
+    private DriverUpdationDTO driverUpdationDTO;
+
+    @Setup
+    public void setUp() {
+        switch (input) {
+            case "hyphens":
+                email = "a@" + "a-".repeat(2000) + "!";
+                break;
+            case "labels":
+                email = "a@" + "a.".repeat(500) + "-";
+                break;
+            default:
+                email = "ahufflepuff@hotmail.com";
+        }
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+        driverUpdationDTO = new DriverUpdationDTO(1L, "Allan", "Hufflepuff", email, "hotmail123", 43, new GeoCoordinate(35.32, 87.23), OnlineStatus.ONLINE);
+    }
+
+    @Benchmark
+    public boolean legacyRegex() {
+        return LEGACY_EMAIL.matcher(email).matches();
+    }
+
+    @Benchmark
+    public boolean emailValidator() {
+        return EmailValidator.isValid(email);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<DriverUpdationDTO>> validateUpdationDTO() {
+        return validator.validate(driverUpdationDTO);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.openjdk.jmh.annotations.*;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.util.GeoCoordinateDerializer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeoCoordinateBenchmark {
+
+    private ObjectReader reader;
+    private String json;
+    private String compactJson;
+    private GeoCoordinate coordinate;
+    private GeoCoordinate same;
+    private GeoCoordinate other;
+
+    @Setup
+    public void setUp() {
+        reader = new ObjectMapper()
+                .registerModule(new SimpleModule().addDeserializer(GeoCoordinate.class, new GeoCoordinateDerializer()))
+                .readerFor(GeoCoordinate.class);
+        json = "{\"latitude\":35.32,\"longitude\":87.23}";
+        compactJson = "[35.32,87.23]";
+        coordinate = new GeoCoordinate(35.32, 87.23);
+        same = new GeoCoordinate(35.32, 87.23);
+        other = new GeoCoordinate(64.25, 100.25);
+    }
+
+    @Benchmark
+    public GeoCoordinate deserialize() throws IOException {
+        return reader.readValue(json);
+    }
+
+    @Benchmark
+    public GeoCoordinate deserializeCompact() throws IOException {
+        return reader.readValue(compactJson);
+    }
+
+    @Benchmark
+    public boolean equalsSame() {
+        return coordinate.equals(same);
+    }
+
+    @Benchmark
+    public boolean equalsOther() {
+        return coordinate.equals(other);
+    }
+
+    @Benchmark
+    public int hashCodeOf() {
+        return coordinate.hashCode();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.openjdk.jmh.annotations.*;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.dto.DriverDTO;
+import org.sharing.car.util.JsonMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonMapperBenchmark {
+
+    private DriverDTO driver;
+    private String driverJson;
+    private String driversJson;
+
+    @Setup
+    public void setUp() {
+        driver = new DriverDTO(1L, "Allan", "Hufflepuff", "ahufflepuff@hotmail.com", "hotmail123", 43, new GeoCoordinate(35.32, 87.23), "ONLINE");
+        driverJson = JsonMapper.serialize(driver);
+        List<DriverDTO> drivers = new ArrayList<>();
+        for (long i = 0; i < 100; i++) {
+            drivers.add(new DriverDTO(i, "First" + i, "Last" + i, "driver" + i + "@carshare.org", "secret" + i, 43, new GeoCoordinate(35.32, 87.23), "ONLINE"));
+        }
+        driversJson = JsonMapper.serialize(drivers);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return JsonMapper.serialize(driver);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return JsonMapper.deserialize(DriverDTO.class, driverJson);
+    }
+
+    @Benchmark
+    public List<DriverDTO> mapListFromJson() throws IOException {
+        return JsonMapper.mapListFromJson(driversJson, new TypeReference<List<DriverDTO>>() {
+        });
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sharing.car.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReactiveDriverServerTest {
+
+    private ReactiveDriverServer server;
+
+    @BeforeEach
+    public void setUp() {
+        // answers with 4 KB of the content type named in the query
+        HttpHandler handler = (request, response) -> {
+            response.getHeaders().set(HttpHeaders.CONTENT_TYPE, request.getQueryParams().getFirst("type"));
+            byte[] body = "x".repeat(4096).getBytes(StandardCharsets.UTF_8);
+            return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+        };
+        server = new ReactiveDriverServer(handler, "localhost", 0, 2048, List.of(MimeType.valueOf("application/json"),
+                MimeType.valueOf("application/x-ndjson"), MimeType.valueOf("text/event-stream")));
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testCompressesConfiguredTypes() {
+        assertEquals("gzip", contentEncoding("application/json"));
+        assertEquals("gzip", contentEncoding("application/json;charset=UTF-8"));
+        assertNull(contentEncoding("text/plain"));
+    }
+
+    @Test
+    public void testNeverCompressesStreams() {
+        assertNull(contentEncoding("application/x-ndjson"));
+        assertNull(contentEncoding("text/event-stream;charset=UTF-8"));
+    }
+
+    @Test
+    public void testIsCompressible() {
+        assertTrue(server.isCompressible("Application/JSON"));
+        assertFalse(server.isCompressible(null));
+        assertFalse(server.isCompressible("not a type"));
+        assertFalse(server.isCompressible("application/x-ndjson"));
+    }
+
+    private String contentEncoding(String contentType) {
+        return HttpClient.create()
+                .headers(headers -> headers.set(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .get()
+                .uri("http://localhost:" + server.getPort() + "/?type=" + contentType.replace(";", "%3B"))
+                .response()
+                .map(response -> Optional.ofNullable(response.responseHeaders().get(HttpHeaders.CONTENT_ENCODING)))
+                .block()
+                .orElse(null);
+    }
+}
@@ -20,35 +20,71 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.modelmapper.ModelMapper;
+import org.sharing.car.config.WebConfig;
+import org.sharing.car.domainvalue.BoundingBox;
 import org.sharing.car.domainvalue.GeoCoordinate;
 import org.sharing.car.domainvalue.OnlineStatus;
+import org.sharing.car.dto.DriverBatchResultDTO;
+import org.sharing.car.dto.DriverChangesDTO;
 import org.sharing.car.dto.DriverCreationDTO;
 import org.sharing.car.dto.DriverDTO;
+import org.sharing.car.dto.DriverFilter;
+import org.sharing.car.dto.DriverImportReportDTO;
+import org.sharing.car.dto.DriverLocationDTO;
+import org.sharing.car.dto.DriverSlice;
+import org.sharing.car.dto.DriverStatusDTO;
 import org.sharing.car.dto.DriverUpdationDTO;
 import org.sharing.car.exception.DriverNotFoundException;
+import org.sharing.car.exception.DuplicateEmailException;
+import org.sharing.car.exception.PreconditionFailedException;
+import org.sharing.car.exception.ResyncRequiredException;
+import org.sharing.car.mapper.DriverMapper;
+import org.sharing.car.service.DriverImporter;
+import org.sharing.car.service.DriverRequestExecutor;
 import org.sharing.car.service.DriverService;
+import org.sharing.car.util.DriverFileFormat;
 import org.sharing.car.util.JsonMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
+import static org.hamcrest.Matchers.hasItem;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(SpringExtension.class)
 @WebMvcTest(DriverController.class)
+@Import(DriverRequestExecutor.class)
 public class DriverControllerTest {
 
     @Autowired
@@ -58,7 +94,10 @@ public class DriverControllerTest {
     private DriverService driverService;
 
     @MockBean
-    private ModelMapper mapper;
+    private DriverMapper mapper;
+
+    @MockBean
+    private DriverImporter driverImporter;
 
     DriverCreationDTO creationDTO;
     DriverUpdationDTO updationDTO;
@@ -99,10 +138,83 @@ public class DriverControllerTest {
         assertEquals(expected, driver1);
     }
 
+    @Test
+    public void testCreateDriverWithTakenEmail_Returns409() throws Exception {
+        when(driverService.createDriver(any(DriverDTO.class))).thenThrow(DuplicateEmailException.class);
+        mockMvc.perform(MockMvcRequestBuilders.post("/drivers")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonMapper.serialize(creationDTO)))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void testFindDriverByEmail_Returns200() throws Exception {
+        when(driverService.findDriverByEmail("jmaeir@t-online.com")).thenReturn(driver2);
+        MvcResult result = perform(MockMvcRequestBuilders.get("/drivers/by-email")
+                .param("email", "jmaeir@t-online.com")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn();
+
+        DriverDTO expected = (DriverDTO) JsonMapper.deserialize(DriverDTO.class, result.getResponse().getContentAsString());
+        assertEquals(expected, driver2);
+    }
+
+    @Test
+    public void testFindDriverByUnknownEmail_Returns404() throws Exception {
+        when(driverService.findDriverByEmail("nobody@carshare.org")).thenThrow(DriverNotFoundException.class);
+        perform(MockMvcRequestBuilders.get("/drivers/by-email")
+                .param("email", "nobody@carshare.org")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testCreateDriverFromSmile_Returns201AsSmile() throws Exception {
+        when(driverService.createDriver(any(DriverDTO.class))).thenReturn(driver1);
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.post("/drivers")
+                .contentType(WebConfig.APPLICATION_SMILE)
+                .accept(WebConfig.APPLICATION_SMILE)
+                .content(JsonMapper.getSmileMapper().writeValueAsBytes(creationDTO)))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(WebConfig.APPLICATION_SMILE))
+                .andExpect(header().string(HttpHeaders.ETAG, DriverController.etagOf(driver1, WebConfig.APPLICATION_SMILE)))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)))
+                .andReturn();
+
+        assertEquals(driver1, JsonMapper.getSmileMapper().readValue(result.getResponse().getContentAsByteArray(), DriverDTO.class));
+        verify(driverService).createDriver(argThat(driver -> creationDTO.getCoordinate().equals(driver.getCoordinate())));
+    }
+
+    @Test
+    public void testFindAllDriversAsCbor_Returns200() throws Exception {
+        when(driverService.findAllDrivers(0, 20, "asc", "id")).thenReturn(drivers);
+        MvcResult result = perform(MockMvcRequestBuilders.get("/drivers")
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)))
+                .andReturn();
+
+        List<DriverDTO> found = JsonMapper.getCborMapper().readValue(result.getResponse().getContentAsByteArray(), new TypeReference<List<DriverDTO>>() {
+        });
+        assertEquals(drivers, found);
+    }
+
+    @Test
+    public void testFindDriverWithAnyAccept_ReturnsJson() throws Exception {
+        when(driverService.findDriverById(1L)).thenReturn(driver1);
+        perform(MockMvcRequestBuilders.get("/drivers/1")
+                .accept(MediaType.ALL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
     @Test
     public void testFindInvalidDriver_Returns404() throws Exception {
         when(driverService.findDriverById(5L)).thenThrow(DriverNotFoundException.class);
-        mockMvc.perform(MockMvcRequestBuilders.get("/drivers/5")
+        perform(MockMvcRequestBuilders.get("/drivers/5")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound());
@@ -111,7 +223,7 @@ public class DriverControllerTest {
     @Test
     public void testFindValidDriver_Returns200() throws Exception {
         when(driverService.findDriverById(1L)).thenReturn(driver1);
-        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/drivers/1")
+        MvcResult result = perform(MockMvcRequestBuilders.get("/drivers/1")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
@@ -123,8 +235,8 @@ public class DriverControllerTest {
 
     @Test
     public void testUpdateInvalidDriver_Returns404() throws Exception {
-        when(mapper.map(any(DriverUpdationDTO.class), eq(DriverDTO.class))).thenReturn(driver1);
-        when(driverService.updateDriver(any(DriverDTO.class), eq(1L))).thenThrow(DriverNotFoundException.class);
+        when(mapper.toDTO(any(DriverUpdationDTO.class))).thenReturn(driver1);
+        when(driverService.updateDriver(any(DriverDTO.class), eq(1L), isNull())).thenThrow(DriverNotFoundException.class);
         mockMvc.perform(MockMvcRequestBuilders.put("/drivers/1")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON)
@@ -134,8 +246,8 @@ public class DriverControllerTest {
 
     @Test
     public void testUpdateValidDriver_Returns200() throws Exception {
-        when(mapper.map(any(DriverUpdationDTO.class), eq(DriverDTO.class))).thenReturn(driver1);
-        when(driverService.updateDriver(any(DriverDTO.class), eq(1L))).thenReturn(driver1);
+        when(mapper.toDTO(any(DriverUpdationDTO.class))).thenReturn(driver1);
+        when(driverService.updateDriver(any(DriverDTO.class), eq(1L), isNull())).thenReturn(driver1);
         MvcResult result = mockMvc.perform(MockMvcRequestBuilders.put("/drivers/1")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON)
@@ -147,6 +259,96 @@ public class DriverControllerTest {
         assertEquals(expected, driver1);
     }
 
+    @Test
+    public void testUpdateDriverIfMatch_PassesVersions() throws Exception {
+        DriverDTO updated = driver1.withVersion(4L);
+        when(mapper.toDTO(any(DriverUpdationDTO.class))).thenReturn(driver1);
+        when(driverService.updateDriver(any(DriverDTO.class), eq(1L), eq(Set.of(3L)))).thenReturn(updated);
+        mockMvc.perform(MockMvcRequestBuilders.put("/drivers/1")
+                .header(HttpHeaders.IF_MATCH, "\"3.1a2b\", W/\"2.1a2b\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonMapper.serialize(updationDTO)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, DriverController.etagOf(updated, MediaType.APPLICATION_JSON)));
+    }
+
+    @Test
+    public void testUpdateDriverStaleIfMatch_Returns412() throws Exception {
+        when(mapper.toDTO(any(DriverUpdationDTO.class))).thenReturn(driver1);
+        when(driverService.updateDriver(any(DriverDTO.class), eq(1L), eq(Set.of(2L)))).thenThrow(new PreconditionFailedException("stale"));
+        mockMvc.perform(MockMvcRequestBuilders.put("/drivers/1")
+                .header(HttpHeaders.IF_MATCH, "\"2.1a2b\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonMapper.serialize(updationDTO)))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    public void testFindUnchangedDriver_Returns304() throws Exception {
+        DriverDTO versioned = driver1.withVersion(2L);
+        when(driverService.findDriverById(1L)).thenReturn(versioned);
+        perform(MockMvcRequestBuilders.get("/drivers/1")
+                .header(HttpHeaders.IF_NONE_MATCH, DriverController.etagOf(versioned, MediaType.APPLICATION_JSON))
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        perform(MockMvcRequestBuilders.get("/drivers/1")
+                .header(HttpHeaders.IF_NONE_MATCH,
+                        DriverController.etagOf(versioned.withCoordinate(new GeoCoordinate(35.4, 87.3)), MediaType.APPLICATION_JSON))
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, DriverController.etagOf(versioned, MediaType.APPLICATION_JSON)));
+    }
+
+    @Test
+    public void testFindUnchangedDriverPerRepresentation_Returns304() throws Exception {
+        DriverDTO versioned = driver1.withVersion(2L);
+        when(driverService.findDriverById(1L)).thenReturn(versioned);
+        String jsonTag = DriverController.etagOf(versioned, MediaType.APPLICATION_JSON);
+        String cborTag = DriverController.etagOf(versioned, MediaType.APPLICATION_CBOR);
+        assertEquals("\"2." + Integer.toHexString(versioned.hashCode()) + "-cbor\"", cborTag);
+
+        perform(MockMvcRequestBuilders.get("/drivers/1")
+                .header(HttpHeaders.IF_NONE_MATCH, cborTag)
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isNotModified())
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)));
+
+        // a JSON copy must not validate the CBOR body, nor the other way round
+        perform(MockMvcRequestBuilders.get("/drivers/1")
+                .header(HttpHeaders.IF_NONE_MATCH, jsonTag)
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, cborTag));
+        perform(MockMvcRequestBuilders.get("/drivers/1")
+                .header(HttpHeaders.IF_NONE_MATCH, cborTag)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, jsonTag));
+    }
+
+    @Test
+    public void testEtagCoversEveryField() {
+        DriverDTO withoutPassword = new DriverDTO(1L, driver1.getFirstName(), driver1.getLastName(), driver1.getEmail(), null,
+                driver1.getAge(), driver1.getCoordinate(), driver1.getStatus());
+        String tag = DriverController.etagOf(withoutPassword, MediaType.APPLICATION_JSON);
+        assertNotEquals(tag, DriverController.etagOf(driver1, MediaType.APPLICATION_JSON));
+        assertNotEquals(tag, DriverController.etagOf(withoutPassword.withStatus("OFFLINE"), MediaType.APPLICATION_JSON));
+        assertEquals(tag, DriverController.etagOf(withoutPassword.withCoordinate(new GeoCoordinate(35.32, 87.23)), MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    public void testUpdateDriverIfMatchRepresentationTag_PassesVersion() throws Exception {
+        when(mapper.toDTO(any(DriverUpdationDTO.class))).thenReturn(driver1);
+        when(driverService.updateDriver(any(DriverDTO.class), eq(1L), eq(Set.of(3L)))).thenReturn(driver1.withVersion(4L));
+        mockMvc.perform(MockMvcRequestBuilders.put("/drivers/1")
+                .header(HttpHeaders.IF_MATCH, "\"3.1a2b-x-jackson-smile\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonMapper.serialize(updationDTO)))
+                .andExpect(status().isOk());
+    }
+
     @Test
     public void testDeleteInvalidDriver_Returns404() throws Exception {
         doThrow(DriverNotFoundException.class).when(driverService).deleteDriver(5L);
@@ -169,7 +371,7 @@ public class DriverControllerTest {
     @Test
     public void testFindAllDrivers_Return200AndDrivers() throws Exception {
         when(driverService.findAllDrivers(0, 20, "asc", "id")).thenReturn(drivers);
-        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/drivers")
+        MvcResult result = perform(MockMvcRequestBuilders.get("/drivers")
                 .param("pageNo", "0")
                 .param("pageSize", "20")
                 .param("direction", "asc")
@@ -182,4 +384,325 @@ public class DriverControllerTest {
         });
         assertEquals(expectedDrivers, drivers);
     }
+
+    @Test
+    public void testFindOnlineDrivers_Return200AndDrivers() throws Exception {
+        when(driverService.findDrivers(new DriverFilter(OnlineStatus.ONLINE, null, null, null, null), 0, 20, "asc", "id")).thenReturn(drivers);
+        MvcResult result = perform(MockMvcRequestBuilders.get("/drivers")
+                .param("status", "ONLINE")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk()).andReturn();
+
+        List<DriverDTO> expectedDrivers = JsonMapper.mapListFromJson(result.getResponse().getContentAsString(), new TypeReference<List<DriverDTO>>() {
+        });
+        assertEquals(expectedDrivers, drivers);
+        verify(driverService, never()).findAllDrivers(anyInt(), anyInt(), anyString(), anyString());
+    }
+
+    @Test
+    public void testFindFilteredDrivers_Return200AndDrivers() throws Exception {
+        DriverFilter filter = new DriverFilter(null, 25, 45, "jo", ZonedDateTime.parse("2021-05-01T00:00:00Z"));
+        when(driverService.findDrivers(filter, 0, 20, "asc", "id")).thenReturn(List.of(driver2));
+        MvcResult result = perform(MockMvcRequestBuilders.get("/drivers")
+                .param("minAge", "25")
+                .param("maxAge", "45")
+                .param("name", "jo")
+                .param("updatedSince", "2021-05-01T00:00:00Z")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk()).andReturn();
+
+        List<DriverDTO> expectedDrivers = JsonMapper.mapListFromJson(result.getResponse().getContentAsString(), new TypeReference<List<DriverDTO>>() {
+        });
+        assertEquals(List.of(driver2), expectedDrivers);
+    }
+
+    @Test
+    public void testFindDriverFields_Return200AndRows() throws Exception {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", 1L);
+        row.put("firstName", "Allan");
+        when(driverService.findDriverFields(new DriverFilter(), List.of("firstName"), 0, 20, "asc", "id")).thenReturn(List.of(row));
+        perform(MockMvcRequestBuilders.get("/drivers")
+                .param("fields", "firstName")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"id\":1,\"firstName\":\"Allan\"}]", true));
+        verify(driverService, never()).findAllDrivers(anyInt(), anyInt(), anyString(), anyString());
+    }
+
+    @Test
+    public void testFindOfflineDriversAfterCursor_Returns400() throws Exception {
+        perform(MockMvcRequestBuilders.get("/drivers")
+                .param("after", "")
+                .param("status", "OFFLINE")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testFindDriverChanges_Return200AndWatermark() throws Exception {
+        when(driverService.findChanges("d2F0ZXJtYXJr", 50)).thenReturn(new DriverChangesDTO(List.of(driver1), List.of(7L), "bmV4dA", false));
+        perform(MockMvcRequestBuilders.get("/drivers/changes")
+                .param("since", "d2F0ZXJtYXJr")
+                .param("limit", "50")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"changed\":[{\"id\":1}],\"deleted\":[7],\"watermark\":\"bmV4dA\",\"hasMore\":false}"));
+    }
+
+    @Test
+    public void testFindDriverChangesWithExpiredWatermark_Returns410() throws Exception {
+        when(driverService.findChanges("b2xk", 100)).thenThrow(new ResyncRequiredException("too old"));
+        perform(MockMvcRequestBuilders.get("/drivers/changes")
+                .param("since", "b2xk")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isGone());
+    }
+
+    @Test
+    public void testExportDriversAsNdjson_Returns200() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<DriverDTO> sink = invocation.getArgument(0);
+            drivers.forEach(sink);
+            return null;
+        }).when(driverService).exportDrivers(any());
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/drivers/export"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/x-ndjson;charset=UTF-8"))
+                .andReturn();
+
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertEquals(2, lines.length);
+        DriverDTO exported = (DriverDTO) JsonMapper.deserialize(DriverDTO.class, lines[1]);
+        assertEquals(driver2.getEmail(), exported.getEmail());
+        assertNull(exported.getPassword());
+    }
+
+    @Test
+    public void testExportDriversAsCsv_Returns200() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<DriverDTO> sink = invocation.getArgument(0);
+            drivers.forEach(sink);
+            return null;
+        }).when(driverService).exportDrivers(any());
+        mockMvc.perform(MockMvcRequestBuilders.get("/drivers/export").param("format", "csv"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"drivers.csv\""))
+                .andExpect(content().string("id,firstName,lastName,email,age,latitude,longitude,status,version\r\n"
+                        + "1,Allan,Hufflepuff,ahufflepuff@hotmail.com,43,35.32,87.23,ONLINE,\r\n"
+                        + "2,John,Maier,jmaeir@t-online.com,26,64.25,100.25,ONLINE,\r\n"));
+    }
+
+    @Test
+    public void testExportDriversInUnknownFormat_Returns400() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/drivers/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+        verify(driverService, never()).exportDrivers(any());
+    }
+
+    @Test
+    public void testImportDrivers_Returns200AndReport() throws Exception {
+        DriverImportReportDTO report = new DriverImportReportDTO(2, 1, 1, List.of(new DriverBatchResultDTO(1, null, 400, "Invalid age old", null)));
+        when(driverImporter.importDrivers(any(), eq(DriverFileFormat.CSV), isNull())).thenReturn(report);
+        mockMvc.perform(MockMvcRequestBuilders.post("/drivers/import")
+                .param("format", "csv")
+                .contentType("text/csv")
+                .content("firstName,lastName,email,password,age,latitude,longitude\n"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"read\":2,\"imported\":1,\"rejected\":1,\"rejections\":[{\"index\":1,\"status\":400,\"error\":\"Invalid age old\"}]}"));
+    }
+
+    @Test
+    public void testFindDriversInBox_Return200AndDrivers() throws Exception {
+        when(driverService.findDriversInBox(any(BoundingBox.class), eq(50))).thenReturn(drivers);
+        MvcResult result = perform(MockMvcRequestBuilders.get("/drivers/within")
+                .param("minLat", "35")
+                .param("minLon", "87")
+                .param("maxLat", "65")
+                .param("maxLon", "101")
+                .param("limit", "50")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk()).andReturn();
+
+        List<DriverDTO> expectedDrivers = JsonMapper.mapListFromJson(result.getResponse().getContentAsString(), new TypeReference<List<DriverDTO>>() {
+        });
+        assertEquals(expectedDrivers, drivers);
+    }
+
+    @Test
+    public void testFindNearbyDrivers_InvalidStatus_Returns400() throws Exception {
+        perform(MockMvcRequestBuilders.get("/drivers/nearby")
+                .param("lat", "35.3")
+                .param("lon", "87.2")
+                .param("status", "PARKED"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testFindNearbyDrivers_Return200AndDrivers() throws Exception {
+        when(driverService.findNearbyDrivers(35.3, 87.2, 2.5, 5, OnlineStatus.ONLINE)).thenReturn(drivers);
+        MvcResult result = perform(MockMvcRequestBuilders.get("/drivers/nearby")
+                .param("lat", "35.3")
+                .param("lon", "87.2")
+                .param("radiusKm", "2.5")
+                .param("limit", "5")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk()).andReturn();
+
+        List<DriverDTO> expectedDrivers = JsonMapper.mapListFromJson(result.getResponse().getContentAsString(), new TypeReference<List<DriverDTO>>() {
+        });
+        assertEquals(expectedDrivers, drivers);
+    }
+
+    @Test
+    public void testUpdateDriverStatus_Returns200() throws Exception {
+        DriverDTO offline = driver1.withStatus("OFFLINE");
+        when(driverService.updateDriverStatus(1L, OnlineStatus.OFFLINE)).thenReturn(offline);
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.patch("/drivers/1/status")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonMapper.serialize(new DriverStatusDTO(OnlineStatus.OFFLINE))))
+                .andExpect(status().isOk()).andReturn();
+        assertEquals(offline, JsonMapper.deserialize(DriverDTO.class, result.getResponse().getContentAsString()));
+    }
+
+    @Test
+    public void testUpdateDriverStatusWithoutStatus_Returns400() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.patch("/drivers/1/status")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{}"))
+                .andExpect(status().isBadRequest());
+        verify(driverService, never()).updateDriverStatus(anyLong(), any());
+    }
+
+    @Test
+    public void testUpdateDriverLocation_Returns202() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.patch("/drivers/1/location")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonMapper.serialize(new GeoCoordinate(35.40, 87.30))))
+                .andExpect(status().isAccepted());
+        verify(driverService, times(1)).updateDriverLocation(1L, new GeoCoordinate(35.40, 87.30));
+    }
+
+    @Test
+    public void testUpdateInvalidDriverLocation_Returns404() throws Exception {
+        doThrow(DriverNotFoundException.class).when(driverService).updateDriverLocation(eq(5L), any(GeoCoordinate.class));
+        mockMvc.perform(MockMvcRequestBuilders.patch("/drivers/5/location")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonMapper.serialize(new GeoCoordinate(35.40, 87.30))))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testUpdateDriverLocationsWithMissingId_Returns400() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.patch("/drivers/location")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonMapper.serialize(List.of(new DriverLocationDTO(null, new GeoCoordinate(35.40, 87.30))))))
+                .andExpect(status().isBadRequest());
+        verify(driverService, never()).updateDriverLocations(any());
+    }
+
+    @Test
+    public void testFindDriversAfterCursor_Return200AndNextCursor() throws Exception {
+        when(driverService.findDriversAfter("Y3Vyc29y", 2, "asc")).thenReturn(new DriverSlice(drivers, "bmV4dA"));
+        MvcResult result = perform(MockMvcRequestBuilders.get("/drivers")
+                .param("after", "Y3Vyc29y")
+                .param("pageSize", "2")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "bmV4dA"))
+                .andReturn();
+
+        List<DriverDTO> expectedDrivers = JsonMapper.mapListFromJson(result.getResponse().getContentAsString(), new TypeReference<List<DriverDTO>>() {
+        });
+        assertEquals(expectedDrivers, drivers);
+        verify(driverService, never()).findAllDrivers(anyInt(), anyInt(), anyString(), anyString());
+    }
+
+    @Test
+    public void testFindDriversAfterCursorByOtherField_Returns400() throws Exception {
+        perform(MockMvcRequestBuilders.get("/drivers")
+                .param("after", "")
+                .param("field", "age")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testCreateDriversBatch_ReportsPerItemResults() throws Exception {
+        DriverCreationDTO invalid = new DriverCreationDTO("", "Maier", "jmaeir@t-online.com", "abc234", 26, new GeoCoordinate(64.25, 100.25));
+        when(mapper.toDTO(any(DriverCreationDTO.class))).thenReturn(driver1);
+        when(driverService.createDrivers(List.of(driver1))).thenReturn(List.of(driver1));
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.post("/drivers/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonMapper.serialize(List.of(invalid, creationDTO))))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        List<DriverBatchResultDTO> results = JsonMapper.mapListFromJson(result.getResponse().getContentAsString(), new TypeReference<List<DriverBatchResultDTO>>() {
+        });
+        assertEquals(new DriverBatchResultDTO(0, null, 400, "First Name must not be empty", null), results.get(0));
+        assertEquals(new DriverBatchResultDTO(1, 1L, 201, null, driver1), results.get(1));
+    }
+
+    @Test
+    public void testCreateDriversBatch_ReportsTakenEmails() throws Exception {
+        DriverCreationDTO taken = new DriverCreationDTO("John", "Maier", "jmaeir@t-online.com", "abc234", 26, new GeoCoordinate(64.25, 100.25));
+        when(driverService.findRegisteredEmails(List.of("jmaeir@t-online.com", "ahufflepuff@hotmail.com", "ahufflepuff@hotmail.com")))
+                .thenReturn(new HashSet<>(Set.of("jmaeir@t-online.com")));
+        when(mapper.toDTO(any(DriverCreationDTO.class))).thenReturn(driver1);
+        when(driverService.createDrivers(List.of(driver1))).thenReturn(List.of(driver1));
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.post("/drivers/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonMapper.serialize(List.of(taken, creationDTO, creationDTO))))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        List<DriverBatchResultDTO> results = JsonMapper.mapListFromJson(result.getResponse().getContentAsString(), new TypeReference<List<DriverBatchResultDTO>>() {
+        });
+        assertEquals(new DriverBatchResultDTO(0, null, 409, "Email already registered: jmaeir@t-online.com", null), results.get(0));
+        assertEquals(new DriverBatchResultDTO(1, 1L, 201, null, driver1), results.get(1));
+        assertEquals(new DriverBatchResultDTO(2, null, 409, "Email already registered: ahufflepuff@hotmail.com", null), results.get(2));
+    }
+
+    @Test
+    public void testUpdateDriversBatch_ReportsMissingDrivers() throws Exception {
+        DriverUpdationDTO missing = new DriverUpdationDTO(5L, "John", "Maier", "jmaeir@t-online.com", "abc234", 26, new GeoCoordinate(64.25, 100.25), OnlineStatus.ONLINE);
+        DriverDTO missingDTO = new DriverDTO(5L, "John", "Maier", "jmaeir@t-online.com", "abc234", 26, new GeoCoordinate(64.25, 100.25), "ONLINE");
+        when(mapper.toDTO(updationDTO)).thenReturn(driver1);
+        when(mapper.toDTO(missing)).thenReturn(missingDTO);
+        when(driverService.updateDrivers(List.of(driver1, missingDTO))).thenReturn(Map.of(1L, driver1));
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.put("/drivers/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonMapper.serialize(List.of(updationDTO, missing))))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        List<DriverBatchResultDTO> results = JsonMapper.mapListFromJson(result.getResponse().getContentAsString(), new TypeReference<List<DriverBatchResultDTO>>() {
+        });
+        assertEquals(200, results.get(0).getStatus());
+        assertEquals(404, results.get(1).getStatus());
+        assertEquals(5L, results.get(1).getId());
+    }
+
+    @Test
+    public void testDeleteDriversBatch_ReportsMissingDrivers() throws Exception {
+        when(driverService.deleteDrivers(List.of(1L, 5L))).thenReturn(Set.of(1L));
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.delete("/drivers/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[1,5]"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        List<DriverBatchResultDTO> results = JsonMapper.mapListFromJson(result.getResponse().getContentAsString(), new TypeReference<List<DriverBatchResultDTO>>() {
+        });
+        assertEquals(List.of(new DriverBatchResultDTO(0, 1L, 200, null, null),
+                new DriverBatchResultDTO(1, 5L, 404, "Driver not found with ID 5", null)), results);
+    }
+
+    // read endpoints answer with a CompletableFuture, so the response is only written on the async dispatch
+    private ResultActions perform(MockHttpServletRequestBuilder request) throws Exception {
+        ResultActions actions = mockMvc.perform(request);
+        MvcResult result = actions.andReturn();
+        return result.getRequest().isAsyncStarted() ? mockMvc.perform(asyncDispatch(result)) : actions;
+    }
 }
@@ -0,0 +1,80 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sharing.car.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sharing.car.service.DriverPositionHub;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class DriverFeedControllerTest {
+
+    DriverPositionHub hub = new DriverPositionHub(10);
+    DriverFeedController controller;
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    AsyncContext asyncContext = mock(AsyncContext.class);
+    ServletOutputStream out = mock(ServletOutputStream.class);
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        controller = new DriverFeedController(1);
+        ReflectionTestUtils.setField(controller, "positionHub", hub);
+        ReflectionTestUtils.setField(controller, "timeoutMs", 1000L);
+        lenient().when(request.startAsync()).thenReturn(asyncContext);
+        lenient().when(response.getOutputStream()).thenReturn(out);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        controller.shutdown();
+    }
+
+    @Test
+    public void testSubscribeKeepsSubscription() throws IOException {
+        controller.subscribe(35, 87, 36, 88, request, response);
+        assertEquals(1, hub.getSubscriberCount());
+        verify(asyncContext).addListener(any());
+        verify(out).setWriteListener(any());
+    }
+
+    @Test
+    public void testFailedAsyncStartReleasesSubscription() {
+        when(request.startAsync()).thenThrow(new IllegalStateException("async not supported"));
+        assertThrows(IllegalStateException.class, () -> controller.subscribe(35, 87, 36, 88, request, response));
+        assertEquals(0, hub.getSubscriberCount());
+    }
+
+    @Test
+    public void testFailedStreamSetupReleasesSubscription() throws IOException {
+        when(response.getOutputStream()).thenThrow(new IOException("connection reset"));
+        assertThrows(IOException.class, () -> controller.subscribe(35, 87, 36, 88, request, response));
+        assertEquals(0, hub.getSubscriberCount());
+        verify(asyncContext).complete();
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sharing.car.controller;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.sharing.car.config.ReactiveConfig;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.dto.DriverCreationDTO;
+import org.sharing.car.dto.DriverDTO;
+import org.sharing.car.dto.DriverPositionDTO;
+import org.sharing.car.exception.DriverNotFoundException;
+import org.sharing.car.mapper.DriverMapper;
+import org.sharing.car.repository.ReactiveDriverRepository;
+import org.sharing.car.service.DriverLocationBuffer;
+import org.sharing.car.service.DriverLocationIndex;
+import org.sharing.car.service.DriverPositionHub;
+import org.sharing.car.service.DriverService;
+import org.sharing.car.util.JsonMapper;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Validation;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReactiveDriverHandlerTest {
+
+    @Mock
+    private ReactiveDriverRepository repository;
+
+    @Mock
+    private DriverService driverService;
+
+    @Mock
+    private DriverMapper mapper;
+
+    @Mock
+    private DriverLocationIndex locationIndex;
+
+    @Mock
+    private DriverLocationBuffer locationBuffer;
+
+    DriverPositionHub positionHub;
+    WebTestClient client;
+    DriverDTO driver1;
+    DriverDTO driver2;
+
+    @BeforeEach
+    public void setUp() {
+        positionHub = new DriverPositionHub(10);
+        ReactiveDriverHandler handler = new ReactiveDriverHandler(repository, driverService, mapper, locationIndex, locationBuffer, positionHub,
+                Validation.buildDefaultValidatorFactory().getValidator());
+        client = WebTestClient.bindToRouterFunction(ReactiveConfig.driverRoutes(handler))
+                .handlerStrategies(ReactiveConfig.handlerStrategies(JsonMapper.getObjectMapper()))
+                .build();
+        driver1 = new DriverDTO(1L, "Allan", "Hufflepuff", "ahufflepuff@hotmail.com", "hotmail123", 43, new GeoCoordinate(35.32, 87.23), "ONLINE");
+        driver2 = new DriverDTO(2L, "John", "Maier", "jmaeir@t-online.com", "abc234", 26, new GeoCoordinate(35.33, 87.24), "OFFLINE");
+    }
+
+    @Test
+    public void testFindValidDriver_OverlaysBufferedLocation() {
+        when(repository.findById(1L)).thenReturn(Mono.just(driver1));
+        when(locationBuffer.get(1L)).thenReturn(Optional.of(new GeoCoordinate(35.40, 87.30)));
+        client.get().uri("/drivers/1").exchange()
+                .expectStatus().isOk()
+                .expectBody(DriverDTO.class).isEqualTo(driver1.withCoordinate(new GeoCoordinate(35.40, 87.30)));
+    }
+
+    @Test
+    public void testFindInvalidDriver_Returns404() {
+        when(repository.findById(5L)).thenReturn(Mono.empty());
+        client.get().uri("/drivers/5").exchange()
+                .expectStatus().isNotFound()
+                .expectBody().jsonPath("$.status").isEqualTo(404);
+    }
+
+    @Test
+    public void testFindAllDrivers_InvalidDirection_Returns400() {
+        client.get().uri("/drivers?direction=sideways").exchange().expectStatus().isBadRequest();
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    public void testFindAllDrivers_ReturnsPage() {
+        when(repository.findAll(0, 2, Sort.Direction.DESC, "age")).thenReturn(Flux.just(driver1, driver2));
+        client.get().uri("/drivers?pageSize=2&direction=desc&field=age").exchange()
+                .expectStatus().isOk()
+                .expectBodyList(DriverDTO.class).isEqualTo(List.of(driver1, driver2));
+    }
+
+    @Test
+    public void testFindAllDrivers_NegotiatesCbor() throws Exception {
+        when(repository.findAll(0, 20, Sort.Direction.ASC, "id")).thenReturn(Flux.just(driver1, driver2));
+        byte[] body = client.get().uri("/drivers").accept(MediaType.APPLICATION_CBOR).exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_CBOR)
+                .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .expectBody(byte[].class).returnResult().getResponseBody();
+        assertEquals(List.of(driver1, driver2), JsonMapper.getCborMapper().readValue(body, new TypeReference<List<DriverDTO>>() {
+        }));
+    }
+
+    @Test
+    public void testStreamDrivers_EmitsNdjson() {
+        when(repository.streamAll(Sort.Direction.ASC)).thenReturn(Flux.just(driver1, driver2));
+        List<DriverDTO> streamed = client.get().uri("/drivers/stream").accept(MediaType.APPLICATION_NDJSON).exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .returnResult(DriverDTO.class).getResponseBody().collectList().block();
+        assertEquals(List.of(driver1, driver2), streamed);
+    }
+
+    @Test
+    public void testFindNearbyDrivers_SkipsOfflineDriversInDistanceOrder() {
+        when(locationIndex.findNearest(35.3, 87.2, 5, 10)).thenReturn(List.of(
+                new DriverLocationIndex.Neighbour(2L, 0.5), new DriverLocationIndex.Neighbour(1L, 1.5)));
+        when(repository.findAllById(List.of(2L, 1L))).thenReturn(Flux.just(driver1, driver2));
+        client.get().uri("/drivers/nearby?lat=35.3&lon=87.2").exchange()
+                .expectStatus().isOk()
+                .expectBodyList(DriverDTO.class).isEqualTo(List.of(driver1));
+    }
+
+    @Test
+    public void testFindNearbyDrivers_InvalidCoordinate_Returns400() {
+        client.get().uri("/drivers/nearby?lat=95&lon=87.2").exchange().expectStatus().isBadRequest();
+        verify(locationIndex, never()).findNearest(anyDouble(), anyDouble(), anyDouble(), anyInt());
+    }
+
+    @Test
+    public void testCreateValidDriver_Returns201() {
+        when(driverService.createDriver(any(DriverDTO.class))).thenReturn(driver1);
+        client.post().uri("/drivers").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(JsonMapper.serialize(new DriverCreationDTO("Allan", "Hufflepuff", "ahufflepuff@hotmail.com", "hotmail123", 43, new GeoCoordinate(35.32, 87.23))))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(DriverDTO.class).isEqualTo(driver1);
+    }
+
+    @Test
+    public void testCreateInvalidDriver_Returns400() {
+        client.post().uri("/drivers").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(JsonMapper.serialize(new DriverCreationDTO("", "Hufflepuff", "ahufflepuff@hotmail.com", "hotmail123", 12, null)))
+                .exchange()
+                .expectStatus().isBadRequest();
+        verifyNoInteractions(driverService);
+    }
+
+    @Test
+    public void testDeleteInvalidDriver_Returns404() {
+        doThrow(DriverNotFoundException.class).when(driverService).deleteDriver(5L);
+        client.delete().uri("/drivers/5").exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    public void testUpdateDriverLocation_Returns202() {
+        client.patch().uri("/drivers/1/location").contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"latitude\":35.4,\"longitude\":87.3}")
+                .exchange()
+                .expectStatus().isAccepted();
+        verify(driverService).updateDriverLocation(eq(1L), eq(new GeoCoordinate(35.4, 87.3)));
+    }
+
+    @Test
+    public void testPositionFeedStreamsChangesInsideTheBox() {
+        Flux<DriverPositionDTO> feed = client.get().uri("/drivers/feed?minLat=35&minLon=87&maxLat=36&maxLon=88")
+                .accept(MediaType.TEXT_EVENT_STREAM).exchange()
+                .expectStatus().isOk()
+                .returnResult(DriverPositionDTO.class).getResponseBody();
+        // the subscription is registered once the response headers are in
+        assertEquals(1, positionHub.getSubscriberCount());
+        positionHub.publish(new DriverPositionDTO(2L, new GeoCoordinate(64.25, 100.25), null, Instant.now()));
+        positionHub.publish(new DriverPositionDTO(1L, new GeoCoordinate(35.32, 87.23), "ONLINE", Instant.now()));
+        assertEquals(1L, feed.blockFirst(Duration.ofSeconds(5)).getId());
+    }
+
+    @Test
+    public void testPositionFeed_InvalidBox_Returns400() {
+        client.get().uri("/drivers/feed?minLat=35&minLon=87&maxLat=95&maxLon=88").exchange().expectStatus().isBadRequest();
+        assertEquals(0, positionHub.getSubscriberCount());
+    }
+}
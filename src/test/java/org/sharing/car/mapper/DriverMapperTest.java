@@ -0,0 +1,81 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.mapper;
+
+import org.junit.jupiter.api.Test;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.domainvalue.OnlineStatus;
+import org.sharing.car.dto.DriverCreationDTO;
+import org.sharing.car.dto.DriverDTO;
+import org.sharing.car.dto.DriverUpdationDTO;
+import org.sharing.car.entity.Driver;
+import org.sharing.car.exception.InvalidConstraintsException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DriverMapperTest {
+
+    private final DriverMapper mapper = new DriverMapper();
+
+    @Test
+    public void testEntityToDTO() {
+        Driver driver = new Driver("Allan", "Hufflepuff", "ahufflepuff@hotmail.com", "hotmail123", 43, new GeoCoordinate(35.32, 87.23), OnlineStatus.ONLINE);
+        driver.setId(1L);
+        assertEquals(new DriverDTO(1L, "Allan", "Hufflepuff", "ahufflepuff@hotmail.com", null, 43, new GeoCoordinate(35.32, 87.23), "ONLINE", 0L),
+                mapper.toDTO(driver));
+    }
+
+    @Test
+    public void testDTOToEntity() {
+        Driver driver = mapper.toEntity(new DriverDTO(2L, "John", "Maier", "jmaeir@t-online.com", "abc234", 26, new GeoCoordinate(64.25, 100.25), "OFFLINE"));
+        assertEquals(2L, driver.getId());
+        assertEquals("John", driver.getFirstName());
+        assertEquals("Maier", driver.getLastName());
+        assertEquals("jmaeir@t-online.com", driver.getEmail());
+        assertEquals("abc234", driver.getPassword());
+        assertEquals(26, driver.getAge());
+        assertEquals(new GeoCoordinate(64.25, 100.25), driver.getCoordinate());
+        assertEquals(OnlineStatus.OFFLINE, driver.getStatus());
+    }
+
+    @Test
+    public void testDTOWithInvalidStatus() {
+        DriverDTO driverDTO = new DriverDTO(2L, "John", "Maier", "jmaeir@t-online.com", "abc234", 26, null, "AWAY");
+        assertThrows(InvalidConstraintsException.class, () -> mapper.toEntity(driverDTO));
+    }
+
+    @Test
+    public void testUpdationToDTO() {
+        DriverUpdationDTO updationDTO = new DriverUpdationDTO(1L, "Allan", "Hufflepuff", "ahufflepuff@hotmail.com", "hotmail123", 43, new GeoCoordinate(35.32, 87.23), OnlineStatus.OFFLINE);
+        assertEquals(new DriverDTO(1L, "Allan", "Hufflepuff", "ahufflepuff@hotmail.com", "hotmail123", 43, new GeoCoordinate(35.32, 87.23), "OFFLINE"),
+                mapper.toDTO(updationDTO));
+    }
+
+    @Test
+    public void testCreationToDTO() {
+        DriverCreationDTO creationDTO = new DriverCreationDTO("Allan", "Hufflepuff", "ahufflepuff@hotmail.com", "hotmail123", 43, new GeoCoordinate(35.32, 87.23));
+        assertEquals(new DriverDTO(null, "Allan", "Hufflepuff", "ahufflepuff@hotmail.com", "hotmail123", 43, new GeoCoordinate(35.32, 87.23), "ONLINE"),
+                mapper.toDTO(creationDTO));
+    }
+
+    @Test
+    public void testNullSource() {
+        assertNull(mapper.toDTO((Driver) null));
+        assertNull(mapper.toEntity(null));
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.mapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.domainvalue.OnlineStatus;
+import org.sharing.car.dto.DriverDTO;
+import org.sharing.car.entity.Driver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TimedDriverMapperTest {
+
+    @Test
+    public void testMappingIsTimedByTarget() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TimedDriverMapper mapper = new TimedDriverMapper(meterRegistry);
+        Driver driver = new Driver("Allan", "Hufflepuff", "ahufflepuff@hotmail.com", "hotmail123", 43, new GeoCoordinate(35.32, 87.23), OnlineStatus.ONLINE);
+        DriverDTO driverDTO = mapper.toDTO(driver);
+        mapper.toDTO(driver);
+        mapper.toEntity(driverDTO);
+
+        assertEquals("Allan", driverDTO.getFirstName());
+        assertEquals(2, meterRegistry.get(TimedDriverMapper.TIMER).tag("target", "dto").timer().count());
+        assertEquals(1, meterRegistry.get(TimedDriverMapper.TIMER).tag("target", "entity").timer().count());
+    }
+}
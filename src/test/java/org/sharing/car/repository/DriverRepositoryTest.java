@@ -0,0 +1,216 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sharing.car.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.domainvalue.OnlineStatus;
+import org.sharing.car.dto.DriverFilter;
+import org.sharing.car.entity.Driver;
+import org.sharing.car.entity.DriverTombstone;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest
+public class DriverRepositoryTest {
+
+    @TestConfiguration
+    static class MetricsConfiguration {
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private DriverRepository repository;
+
+    @Autowired
+    private DriverTombstoneRepository tombstoneRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    Driver berlin;
+    Driver potsdam;
+    Driver hamburg;
+    Driver fiji;
+    Driver unknown;
+
+    @BeforeEach
+    public void setUp() {
+        berlin = driver("Berlin", new GeoCoordinate(52.52, 13.40), OnlineStatus.OFFLINE);
+        potsdam = driver("Potsdam", new GeoCoordinate(52.39, 13.06), OnlineStatus.OFFLINE);
+        hamburg = driver("Hamburg", new GeoCoordinate(53.55, 9.99), OnlineStatus.OFFLINE);
+        fiji = driver("Fiji", new GeoCoordinate(-17.71, 178.07), OnlineStatus.ONLINE);
+        unknown = driver("Unknown", null, OnlineStatus.OFFLINE);
+        repository.saveAllAndFlush(List.of(berlin, potsdam, hamburg, fiji, unknown));
+    }
+
+    @Test
+    public void testCoordinateColumnsRoundTrip() {
+        assertEquals(new GeoCoordinate(52.52, 13.40), repository.findById(berlin.getId()).get().getCoordinate());
+        assertNull(repository.findById(unknown.getId()).get().getCoordinate());
+    }
+
+    @Test
+    public void testFindInBoundingBox() {
+        List<Driver> drivers = repository.findInBoundingBox(52, 13, 53, 14, PageRequest.of(0, 10, Sort.by("id"))).getContent();
+        assertEquals(List.of(berlin.getId(), potsdam.getId()), ids(drivers));
+    }
+
+    @Test
+    public void testFindInBoundingBoxAcrossAntimeridian() {
+        List<Driver> drivers = repository.findInBoundingBoxAcrossAntimeridian(-20, 170, -10, -170, PageRequest.of(0, 10, Sort.by("id"))).getContent();
+        assertEquals(List.of(fiji.getId()), ids(drivers));
+    }
+
+    @Test
+    public void testFindWithinRadiusOrdersByDistance() {
+        // Berlin to Potsdam is about 27 km, Berlin to Hamburg about 255 km
+        List<Driver> drivers = repository.findWithinRadius(52.50, 13.35, 50, 52, 12, 53, 15, OnlineStatus.OFFLINE.name(), 10);
+        assertEquals(List.of(berlin.getId(), potsdam.getId()), ids(drivers));
+
+        drivers = repository.findWithinRadius(52.50, 13.35, 300, 49, 6, 56, 20, OnlineStatus.OFFLINE.name(), 2);
+        assertEquals(List.of(berlin.getId(), potsdam.getId()), ids(drivers));
+
+        assertEquals(List.of(), repository.findWithinRadius(52.50, 13.35, 50, 52, 12, 53, 15, OnlineStatus.ONLINE.name(), 10));
+    }
+
+    @Test
+    public void testUpdateStatus() {
+        long version = repository.findVersionById(berlin.getId()).get();
+        assertEquals(1, repository.updateStatus(berlin.getId(), OnlineStatus.ONLINE, ZonedDateTime.now()));
+        assertEquals(0, repository.updateStatus(-1L, OnlineStatus.ONLINE, ZonedDateTime.now()));
+        assertEquals(OnlineStatus.ONLINE, repository.findById(berlin.getId()).get().getStatus());
+        assertEquals(Optional.of(version + 1), repository.findVersionById(berlin.getId()));
+        assertEquals(Optional.empty(), repository.findVersionById(-1L));
+    }
+
+    @Test
+    public void testFindMatchingFilter() {
+        DriverFilter filter = new DriverFilter(OnlineStatus.OFFLINE, null, null, "p", null);
+        assertEquals(List.of(potsdam.getId()), ids(repository.findMatching(DriverSpecifications.matching(filter), PageRequest.of(0, 10, Sort.by("id")))));
+
+        filter = new DriverFilter(null, null, null, null, ZonedDateTime.now().minusMinutes(1));
+        assertEquals(List.of(unknown.getId(), fiji.getId()), ids(repository.findMatching(DriverSpecifications.matching(filter), PageRequest.of(0, 2, Sort.by("id").descending()))));
+
+        // like wildcards in the name prefix match literally
+        filter = new DriverFilter(null, null, null, "%", null);
+        assertEquals(List.of(), repository.findMatching(DriverSpecifications.matching(filter), PageRequest.of(0, 10, Sort.by("id"))));
+    }
+
+    @Test
+    public void testFindFieldsSelectsOnlyRequestedColumns() {
+        List<Map<String, Object>> rows = repository.findFields(DriverSpecifications.matching(new DriverFilter(null, null, 29, null, null)),
+                List.of("firstName", "coordinate"), PageRequest.of(0, 10, Sort.by("id")));
+        assertEquals(List.of(), rows);
+
+        rows = repository.findFields(DriverSpecifications.matching(new DriverFilter()), List.of("firstName", "coordinate", "status"), PageRequest.of(0, 10, Sort.by("id")));
+        assertEquals(5, rows.size());
+        assertEquals(List.of("id", "firstName", "coordinate", "status"), List.copyOf(rows.get(0).keySet()));
+        assertEquals(berlin.getId(), rows.get(0).get("id"));
+        assertEquals(new GeoCoordinate(52.52, 13.40), rows.get(0).get("coordinate"));
+        assertEquals(OnlineStatus.OFFLINE, rows.get(0).get("status"));
+        assertNull(rows.get(4).get("coordinate"));
+    }
+
+    @Test
+    public void testFindChangedSinceIsKeysetOnUpdatedDateAndId() {
+        ZonedDateTime touched = ZonedDateTime.now().plusMinutes(1).truncatedTo(ChronoUnit.MILLIS);
+        for (Driver driver : List.of(hamburg, berlin, potsdam)) {
+            driver.setUpdatedDate(touched);
+        }
+        repository.saveAllAndFlush(List.of(hamburg, berlin, potsdam));
+        ZonedDateTime until = touched.plusSeconds(1);
+
+        List<Driver> first = repository.findChangedSince(touched.minusSeconds(1), 0L, until, PageRequest.of(0, 2));
+        assertEquals(List.of(berlin.getId(), potsdam.getId()), ids(first));
+        List<Driver> next = repository.findChangedSince(touched, potsdam.getId(), until, PageRequest.of(0, 2));
+        assertEquals(List.of(hamburg.getId()), ids(next));
+        assertEquals(List.of(), repository.findChangedSince(touched, 0L, touched.minusNanos(1000), PageRequest.of(0, 2)));
+    }
+
+    @Test
+    public void testTombstonesAreListedAndPurged() {
+        ZonedDateTime now = ZonedDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        tombstoneRepository.saveAllAndFlush(List.of(new DriverTombstone(100L, now.minusDays(10)), new DriverTombstone(101L, now)));
+        List<DriverTombstone> tombstones = tombstoneRepository.findDeletedSince(now.minusDays(11), 0L, now, PageRequest.of(0, 10));
+        assertEquals(List.of(100L, 101L), tombstones.stream().map(DriverTombstone::getDriverId).collect(Collectors.toList()));
+        assertEquals(1, tombstoneRepository.deleteByDeletedDateBefore(now.minusDays(1)));
+        assertEquals(List.of(101L), tombstoneRepository.findAll().stream().map(DriverTombstone::getDriverId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testFindByEmail() {
+        assertEquals(hamburg.getId(), repository.findByEmail("hamburg@carshare.org").get().getId());
+        assertFalse(repository.findByEmail("nobody@carshare.org").isPresent());
+        assertEquals(List.of("fiji@carshare.org"), repository.findExistingEmails(List.of("fiji@carshare.org", "nobody@carshare.org")));
+    }
+
+    @Test
+    public void testEmailIsUnique() {
+        assertThrows(DataIntegrityViolationException.class, () -> repository.saveAndFlush(driver("Berlin", null, OnlineStatus.OFFLINE)));
+    }
+
+    @Test
+    public void testStreamAllEmails() {
+        try (Stream<String> emails = repository.streamAllEmails()) {
+            assertEquals(5, emails.filter(email -> email.endsWith("@carshare.org")).count());
+        }
+    }
+
+    @Test
+    public void testStreamAllInIdOrderDetached() {
+        List<Driver> streamed;
+        try (Stream<Driver> drivers = repository.streamAll(2)) {
+            streamed = drivers.collect(Collectors.toList());
+        }
+        assertEquals(List.of(berlin.getId(), potsdam.getId(), hamburg.getId(), fiji.getId(), unknown.getId()), ids(streamed));
+        assertFalse(entityManager.getEntityManager().contains(streamed.get(0)));
+    }
+
+    private static Driver driver(String name, GeoCoordinate coordinate, OnlineStatus status) {
+        return new Driver(name, "Driver", name.toLowerCase() + "@carshare.org", "secret", 30, coordinate, status);
+    }
+
+    private static List<Long> ids(List<Driver> drivers) {
+        return drivers.stream().map(Driver::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sharing.car.repository;
+
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.dto.DriverDTO;
+import org.sharing.car.exception.InvalidConstraintsException;
+import org.springframework.data.domain.Sort;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReactiveDriverRepositoryTest {
+
+    ReactiveDriverRepository repository;
+    DatabaseClient databaseClient;
+
+    @BeforeEach
+    public void setUp() {
+        ConnectionFactory connectionFactory = ConnectionFactories.get("r2dbc:h2:mem:///reactive-drivers?options=DB_CLOSE_DELAY=-1");
+        repository = new ReactiveDriverRepository(connectionFactory);
+        databaseClient = DatabaseClient.create(connectionFactory);
+        databaseClient.sql("create table drivers (id bigint primary key, first_name varchar(255), last_name varchar(255), email varchar(255), "
+                + "password varchar(255), age int, latitude double, longitude double, status varchar(255), version bigint default 0 not null, created_date timestamp, updated_date timestamp)")
+                .then().block();
+        insert(1L, "Allan", 43, new GeoCoordinate(35.32, 87.23), "ONLINE");
+        insert(2L, "John", 26, new GeoCoordinate(64.25, 100.25), "OFFLINE");
+        insert(3L, "Maria", 35, null, "ONLINE");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        databaseClient.sql("drop table drivers").then().block();
+    }
+
+    @Test
+    public void testFindByIdMapsRow() {
+        DriverDTO driver = repository.findById(1L).block();
+        assertEquals(new DriverDTO(1L, "Allan", "Last1", "driver1@carshare.org", null, 43, new GeoCoordinate(35.32, 87.23), "ONLINE", 0L), driver);
+        assertNull(repository.findById(3L).block().getCoordinate());
+        assertNull(repository.findById(9L).block());
+    }
+
+    @Test
+    public void testFindAllPagesBySortColumn() {
+        assertEquals(List.of(1L, 3L), repository.findAll(0, 2, Sort.Direction.DESC, "age").map(DriverDTO::getId).collectList().block());
+        assertEquals(List.of(2L), repository.findAll(1, 2, Sort.Direction.DESC, "age").map(DriverDTO::getId).collectList().block());
+    }
+
+    @Test
+    public void testFindAllRejectsUnknownSortField() {
+        assertThrows(InvalidConstraintsException.class, () -> repository.findAll(0, 2, Sort.Direction.ASC, "password").blockFirst());
+    }
+
+    @Test
+    public void testFindAllByIdAndStream() {
+        List<Long> ids = repository.findAllById(List.of(3L, 1L)).map(DriverDTO::getId).sort().collectList().block();
+        assertEquals(List.of(1L, 3L), ids);
+        assertEquals(List.of(3L, 2L, 1L), repository.streamAll(Sort.Direction.DESC).map(DriverDTO::getId).collectList().block());
+    }
+
+    private void insert(Long id, String firstName, int age, GeoCoordinate coordinate, String status) {
+        DatabaseClient.GenericExecuteSpec insert = databaseClient.sql("insert into drivers (id, first_name, last_name, email, password, age, latitude, longitude, status, created_date, updated_date) "
+                + "values (:id, :firstName, :lastName, :email, 'secret', :age, :latitude, :longitude, :status, current_timestamp, current_timestamp)")
+                .bind("id", id)
+                .bind("firstName", firstName)
+                .bind("lastName", "Last" + id)
+                .bind("email", "driver" + id + "@carshare.org")
+                .bind("age", age)
+                .bind("status", status);
+        insert = (coordinate == null)
+                ? insert.bindNull("latitude", Double.class).bindNull("longitude", Double.class)
+                : insert.bind("latitude", coordinate.getLatitude()).bind("longitude", coordinate.getLongitude());
+        insert.then().block();
+    }
+}
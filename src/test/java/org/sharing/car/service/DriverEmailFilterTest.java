@@ -0,0 +1,86 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DriverEmailFilterTest {
+
+    @Test
+    public void testRegisteredEmailsAreNeverMissed() {
+        DriverEmailFilter filter = new DriverEmailFilter(10_000, 0.01, 0.1);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("driver" + i + "@carshare.org");
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("driver" + i + "@carshare.org"));
+        }
+        assertEquals(10_000, filter.getEntries());
+    }
+
+    @Test
+    public void testFalsePositiveRateStaysNearTarget() {
+        DriverEmailFilter filter = new DriverEmailFilter(10_000, 0.01, 0.1);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("driver" + i + "@carshare.org");
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("signup" + i + "@carshare.org")) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 200, falsePositives + " false positives");
+        assertEquals(10_000 - falsePositives, filter.getSkippedChecks());
+    }
+
+    @Test
+    public void testRebuildDropsStaleEmails() {
+        DriverEmailFilter filter = new DriverEmailFilter(1000, 0.01, 0.1);
+        filter.put("allan@carshare.org");
+        filter.put("john@carshare.org");
+        assertFalse(filter.needsRebuild());
+
+        filter.markStale(1);
+        assertTrue(filter.needsRebuild());
+
+        filter.rebuild(1, Stream.of("allan@carshare.org"));
+        assertTrue(filter.mightContain("allan@carshare.org"));
+        assertFalse(filter.mightContain("john@carshare.org"));
+        assertEquals(0, filter.getStaleCount());
+        assertFalse(filter.needsRebuild());
+    }
+
+    @Test
+    public void testRebuildWhenTableOutgrowsFilter() {
+        DriverEmailFilter filter = new DriverEmailFilter(10, 0.01, 0.1);
+        for (int i = 0; i <= 10; i++) {
+            filter.put("driver" + i + "@carshare.org");
+        }
+        assertTrue(filter.needsRebuild());
+    }
+
+    @Test
+    public void testInvalidFalsePositiveRate() {
+        assertThrows(IllegalArgumentException.class, () -> new DriverEmailFilter(1000, 1, 0.1));
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.dto.DriverBatchResultDTO;
+import org.sharing.car.dto.DriverDTO;
+import org.sharing.car.dto.DriverImportReportDTO;
+import org.sharing.car.exception.DuplicateEmailException;
+import org.sharing.car.exception.InvalidConstraintsException;
+import org.sharing.car.mapper.DriverMapper;
+import org.sharing.car.util.DriverFileFormat;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+public class DriverImporterTest {
+
+    static final String ALLAN = "{\"firstName\":\"Allan\",\"lastName\":\"Hufflepuff\",\"email\":\"ahufflepuff@hotmail.com\",\"password\":\"hotmail123\",\"age\":43,\"coordinate\":{\"latitude\":35.32,\"longitude\":87.23}}";
+    static final String JOHN = "{\"firstName\":\"John\",\"lastName\":\"Maier\",\"email\":\"jmaeir@t-online.com\",\"password\":\"abc234\",\"age\":26}";
+    static final String MARY = "{\"firstName\":\"Mary\",\"lastName\":\"Jones\",\"email\":\"mjones@gmail.com\",\"password\":\"gmail123\",\"age\":31}";
+    static final String TOO_YOUNG = "{\"firstName\":\"Tim\",\"lastName\":\"Young\",\"email\":\"tyoung@gmail.com\",\"password\":\"gmail123\",\"age\":12}";
+
+    DriverService driverService = mock(DriverService.class);
+    DriverImporter importer;
+    List<List<String>> chunks = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        importer = new DriverImporter(driverService, new DriverMapper(), Validation.buildDefaultValidatorFactory().getValidator(),
+                new SimpleMeterRegistry(), 2, 2, 10, 512);
+        lenient().when(driverService.createDrivers(anyList())).thenAnswer(invocation -> {
+            List<DriverDTO> drivers = invocation.getArgument(0);
+            chunks.add(drivers.stream().map(DriverDTO::getFirstName).collect(Collectors.toList()));
+            return drivers;
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        importer.shutdown();
+    }
+
+    @Test
+    public void testNdjsonIsImportedInChunks() throws IOException {
+        DriverImportReportDTO report = importer.importDrivers(input(ALLAN, "", JOHN, "{not json", TOO_YOUNG, MARY), DriverFileFormat.NDJSON, null);
+        assertEquals(5, report.getRead());
+        assertEquals(3, report.getImported());
+        assertEquals(2, report.getRejected());
+        assertEquals(List.of(List.of("Allan", "John"), List.of("Mary")), chunks);
+        assertEquals(2, report.getRejections().get(0).getIndex());
+        assertTrue(report.getRejections().get(0).getError().startsWith("Invalid JSON"));
+        assertEquals(3, report.getRejections().get(1).getIndex());
+        assertEquals("Age must be greater than or equal to  15", report.getRejections().get(1).getError());
+    }
+
+    @Test
+    public void testImportedDriversGoOnline() throws IOException {
+        importer.importDrivers(input(ALLAN), DriverFileFormat.NDJSON, null);
+        verify(driverService).createDrivers(argThat(drivers -> drivers.get(0).getStatus().equals("ONLINE")
+                && drivers.get(0).getCoordinate().equals(new GeoCoordinate(35.32, 87.23))));
+    }
+
+    @Test
+    public void testOversizedNdjsonLineIsRejected() throws IOException {
+        String huge = "{\"firstName\":\"" + "x".repeat(10_000) + "\"}";
+        DriverImportReportDTO report = importer.importDrivers(input(ALLAN, huge, JOHN), DriverFileFormat.NDJSON, null);
+        assertEquals(3, report.getRead());
+        assertEquals(2, report.getImported());
+        assertEquals(new DriverBatchResultDTO(1, null, 400, "Record is longer than 512 characters", null), report.getRejections().get(0));
+    }
+
+    @Test
+    public void testUnterminatedCsvQuoteIsRejected() throws IOException {
+        DriverImportReportDTO report = importer.importDrivers(input(
+                "firstName,lastName,email,password,age,latitude,longitude",
+                "John,Maier,jmaeir@t-online.com,abc234,26,,",
+                "Allan,\"Hufflepuff,ahufflepuff@hotmail.com,hotmail123,43,,",
+                "x".repeat(1_000)), DriverFileFormat.CSV, null);
+        assertEquals(2, report.getRead());
+        assertEquals(1, report.getImported());
+        assertEquals("Record is longer than 512 characters", report.getRejections().get(0).getError());
+    }
+
+    @Test
+    public void testCsvColumnsAreMatchedByHeader() throws IOException {
+        DriverImportReportDTO report = importer.importDrivers(input(
+                "email,firstName,lastName,password,age,latitude,longitude",
+                "ahufflepuff@hotmail.com,Allan,\"Hufflepuff, Jr.\",hotmail123,43,35.32,87.23",
+                "jmaeir@t-online.com,John,Maier,abc234,26,,",
+                "mjones@gmail.com,Mary,Jones,gmail123,old,,"), DriverFileFormat.CSV, null);
+        assertEquals(2, report.getImported());
+        assertEquals("Invalid age old", report.getRejections().get(0).getError());
+        verify(driverService).createDrivers(argThat(drivers -> drivers.get(0).getLastName().equals("Hufflepuff, Jr.")
+                && drivers.get(1).getCoordinate() == null));
+    }
+
+    @Test
+    public void testCsvWithoutRequiredColumnsIsRefused() {
+        assertThrows(InvalidConstraintsException.class,
+                () -> importer.importDrivers(input("firstName,lastName,email", "Allan,Hufflepuff,ahufflepuff@hotmail.com"), DriverFileFormat.CSV, null));
+        verifyNoInteractions(driverService);
+    }
+
+    @Test
+    public void testFailedChunkIsRetriedRecordByRecord() throws IOException {
+        when(driverService.createDrivers(anyList())).thenThrow(new DataIntegrityViolationException("duplicate email"));
+        when(driverService.createDriver(argThat(driver -> driver != null && driver.getFirstName().equals("John"))))
+                .thenThrow(new DataIntegrityViolationException("duplicate email"));
+        List<DriverBatchResultDTO> rejected = new ArrayList<>();
+        DriverImportReportDTO report = importer.importDrivers(input(ALLAN, JOHN), DriverFileFormat.NDJSON, rejected::add);
+        assertEquals(1, report.getImported());
+        assertEquals(1, report.getRejected());
+        assertEquals(1, rejected.get(0).getIndex());
+        assertEquals("duplicate email", rejected.get(0).getError());
+        verify(driverService, times(2)).createDriver(any());
+    }
+
+    @Test
+    public void testRegisteredEmailIsRejectedWithConflict() throws IOException {
+        when(driverService.findRegisteredEmails(anyList())).thenReturn(Set.of("ahufflepuff@hotmail.com"));
+        List<DriverBatchResultDTO> rejected = new ArrayList<>();
+        DriverImportReportDTO report = importer.importDrivers(input(ALLAN, JOHN), DriverFileFormat.NDJSON, rejected::add);
+        assertEquals(1, report.getImported());
+        assertEquals(new DriverBatchResultDTO(0, null, 409, "Email already registered: ahufflepuff@hotmail.com", null), rejected.get(0));
+        assertEquals(List.of(List.of("John")), chunks);
+        verify(driverService, never()).createDriver(any());
+    }
+
+    @Test
+    public void testRepeatedEmailInChunkIsRejectedWithConflict() throws IOException {
+        List<DriverBatchResultDTO> rejected = new ArrayList<>();
+        DriverImportReportDTO report = importer.importDrivers(input(JOHN, JOHN.replace("John", "Johnny")), DriverFileFormat.NDJSON, rejected::add);
+        assertEquals(1, report.getImported());
+        assertEquals(new DriverBatchResultDTO(1, null, 409, "Email already registered: jmaeir@t-online.com", null), rejected.get(0));
+        assertEquals(List.of(List.of("John")), chunks);
+        verify(driverService, never()).createDriver(any());
+    }
+
+    @Test
+    public void testEmailRegisteredMeanwhileIsRejectedWithConflict() throws IOException {
+        when(driverService.createDrivers(anyList())).thenThrow(new DuplicateEmailException("Email already registered"));
+        when(driverService.createDriver(argThat(driver -> driver != null && driver.getFirstName().equals("Allan"))))
+                .thenThrow(new DuplicateEmailException("Email already registered: ahufflepuff@hotmail.com"));
+        List<DriverBatchResultDTO> rejected = new ArrayList<>();
+        DriverImportReportDTO report = importer.importDrivers(input(ALLAN, JOHN), DriverFileFormat.NDJSON, rejected::add);
+        assertEquals(1, report.getImported());
+        assertEquals(new DriverBatchResultDTO(0, null, 409, "Email already registered: ahufflepuff@hotmail.com", null), rejected.get(0));
+    }
+
+    @Test
+    public void testImportFileReportsRejectedRecordsNextToIt(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("drivers.ndjson");
+        Files.write(file, List.of(ALLAN, TOO_YOUNG), StandardCharsets.UTF_8);
+        DriverImportReportDTO report = importer.importFile(file);
+        assertEquals(1, report.getImported());
+        List<String> rejected = Files.readAllLines(dir.resolve("drivers.ndjson" + DriverImporter.REJECTED_SUFFIX));
+        assertEquals(1, rejected.size());
+        assertTrue(rejected.get(0).contains("\"index\":1"));
+
+        Files.write(file, List.of(JOHN), StandardCharsets.UTF_8);
+        importer.importFile(file);
+        assertFalse(Files.exists(dir.resolve("drivers.ndjson" + DriverImporter.REJECTED_SUFFIX)));
+    }
+
+    private static InputStream input(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.sharing.car.config.CacheConfig;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.dto.DriverDTO;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DriverLocationBufferTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    private final Cache pageCache = new CaffeineCache(CacheConfig.DRIVER_PAGES, Caffeine.newBuilder().build());
+
+    DriverLocationBuffer buffer;
+
+    @BeforeEach
+    public void setUp() {
+        buffer = new DriverLocationBuffer(jdbcTemplate, cacheManager, 2);
+    }
+
+    @Test
+    public void testLastWriteWins() {
+        buffer.record(1L, new GeoCoordinate(35.32, 87.23));
+        buffer.record(1L, new GeoCoordinate(35.40, 87.30));
+        assertEquals(1, buffer.size());
+        assertEquals(Optional.of(new GeoCoordinate(35.40, 87.30)), buffer.get(1L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFlushWritesBatchesAndDrainsBuffer() {
+        when(cacheManager.getCache(CacheConfig.DRIVER_PAGES)).thenReturn(pageCache);
+        buffer.record(1L, new GeoCoordinate(35.32, 87.23));
+        buffer.record(2L, new GeoCoordinate(64.25, 100.25));
+        buffer.record(3L, new GeoCoordinate(10.00, 20.00));
+        buffer.flush();
+
+        ArgumentCaptor<List<Object[]>> batches = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(eq(DriverLocationBuffer.UPDATE_COORDINATE), batches.capture());
+        assertEquals(3, batches.getAllValues().stream().mapToInt(List::size).sum());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testFlushUpdatesCachedPagesInPlace() {
+        when(cacheManager.getCache(CacheConfig.DRIVER_PAGES)).thenReturn(pageCache);
+        DriverDTO moved = new DriverDTO(1L, "Allan", "Hufflepuff", "ahufflepuff@hotmail.com", null, 43, new GeoCoordinate(35.32, 87.23), "ONLINE");
+        DriverDTO parked = new DriverDTO(4L, "John", "Maier", "jmaeir@t-online.com", null, 26, new GeoCoordinate(64.25, 100.25), "ONLINE");
+        List<DriverDTO> page = new CopyOnWriteArrayList<>(List.of(moved, parked));
+        List<DriverDTO> otherPage = new CopyOnWriteArrayList<>(List.of(parked));
+        pageCache.put("0:20:asc:id", page);
+        pageCache.put("1:20:asc:id", otherPage);
+
+        buffer.record(1L, new GeoCoordinate(35.40, 87.30));
+        buffer.flush();
+
+        assertSame(page, pageCache.get("0:20:asc:id", List.class));
+        assertEquals(List.of(moved.withCoordinate(new GeoCoordinate(35.40, 87.30)), parked), page);
+        assertEquals(List.of(parked), pageCache.get("1:20:asc:id", List.class));
+    }
+
+    @Test
+    public void testFailedFlushKeepsPositions() {
+        when(jdbcTemplate.batchUpdate(eq(DriverLocationBuffer.UPDATE_COORDINATE), anyList())).thenThrow(new IllegalStateException("database down"));
+        buffer.record(1L, new GeoCoordinate(35.32, 87.23));
+        buffer.flush();
+        assertEquals(1, buffer.size());
+        verifyNoInteractions(cacheManager);
+    }
+
+    @Test
+    public void testEmptyFlushSkipsDatabase() {
+        buffer.flush();
+        verifyNoInteractions(jdbcTemplate, cacheManager);
+    }
+
+    // a PUT discards the buffered position and writes its own coordinate while a flush that snapshotted the old one is still
+    // writing; the flush must finish before the discard returns, or it lands last and the PUT's coordinate is lost
+    @Test
+    public void testFlushInProgressCannotOverwriteDiscardedDriver() throws Exception {
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        try {
+            CountDownLatch writing = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            JdbcTemplate stallingTemplate = new JdbcTemplate(database) {
+                @Override
+                public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+                    writing.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return super.batchUpdate(sql, batchArgs);
+                }
+            };
+            stallingTemplate.execute("create table drivers (id bigint primary key, latitude double, longitude double, updated_date timestamp)");
+            stallingTemplate.update("insert into drivers values (1, 35.32, 87.23, current_timestamp)");
+            buffer = new DriverLocationBuffer(stallingTemplate, cacheManager, 2);
+            buffer.record(1L, new GeoCoordinate(40.00, 90.00));
+
+            CompletableFuture<Void> flush = CompletableFuture.runAsync(buffer::flush);
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Void> put = CompletableFuture.runAsync(() -> {
+                buffer.discard(1L);
+                stallingTemplate.update("update drivers set latitude = 50.00, longitude = 100.00 where id = 1");
+            });
+            Thread.sleep(200);
+            assertFalse(put.isDone());
+
+            release.countDown();
+            flush.get(5, TimeUnit.SECONDS);
+            put.get(5, TimeUnit.SECONDS);
+            assertEquals(List.of(50.00, 100.00), stallingTemplate.queryForObject("select latitude, longitude from drivers where id = 1",
+                    (row, index) -> List.of(row.getDouble(1), row.getDouble(2))));
+            assertEquals(0, buffer.size());
+        } finally {
+            database.shutdown();
+        }
+    }
+}
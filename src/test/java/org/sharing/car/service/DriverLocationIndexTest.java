@@ -0,0 +1,87 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.domainvalue.OnlineStatus;
+import org.sharing.car.entity.Driver;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DriverLocationIndexTest {
+
+    DriverLocationIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        index = new DriverLocationIndex(0.05);
+        index.put(1L, 52.5200, 13.4050);
+        index.put(2L, 52.5300, 13.4100);
+        index.put(3L, 48.1351, 11.5820);
+        index.put(4L, 52.5210, 13.4060);
+    }
+
+    @Test
+    public void testFindNearestOrdersByDistance() {
+        List<Long> ids = index.findNearest(52.5201, 13.4051, 5, 10).stream()
+                .map(DriverLocationIndex.Neighbour::getDriverId).collect(Collectors.toList());
+        assertEquals(List.of(1L, 4L, 2L), ids);
+    }
+
+    @Test
+    public void testFindNearestHonoursLimit() {
+        assertEquals(2, index.findNearest(52.5201, 13.4051, 5, 2).size());
+    }
+
+    @Test
+    public void testFindNearestAcrossAntimeridian() {
+        index.put(5L, 0.0, 179.99);
+        index.put(6L, 0.0, -179.99);
+        List<Long> ids = index.findNearest(0.0, 179.999, 5, 10).stream()
+                .map(DriverLocationIndex.Neighbour::getDriverId).collect(Collectors.toList());
+        assertEquals(List.of(5L, 6L), ids);
+    }
+
+    @Test
+    public void testMovedDriverLeavesOldCell() {
+        index.put(1L, 48.1352, 11.5821);
+        List<Long> ids = index.findNearest(52.5201, 13.4051, 5, 10).stream()
+                .map(DriverLocationIndex.Neighbour::getDriverId).collect(Collectors.toList());
+        assertFalse(ids.contains(1L));
+        assertEquals(2, index.findNearest(48.1351, 11.5820, 1, 10).size());
+    }
+
+    @Test
+    public void testOfflineDriverIsRemoved() {
+        Driver driver = new Driver("Allan", "Hufflepuff", "ahufflepuff@hotmail.com", "hotmail123", 43, new GeoCoordinate(52.5200, 13.4050), OnlineStatus.OFFLINE);
+        driver.setId(1L);
+        index.update(driver);
+        assertFalse(index.contains(1L));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void testLargeRadiusFallsBackToScan() {
+        assertEquals(4, index.findNearest(50, 12, 5000, 10).size());
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sharing.car.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sharing.car.domainvalue.BoundingBox;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.dto.DriverPositionDTO;
+import org.sharing.car.exception.InvalidConstraintsException;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DriverPositionHubTest {
+
+    DriverPositionHub hub;
+    AtomicInteger signals = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() {
+        hub = new DriverPositionHub(2);
+    }
+
+    @Test
+    public void testOnlyPositionsInsideTheBoxAreQueued() {
+        DriverPositionHub.Subscription subscription = hub.subscribe(new BoundingBox(35, 87, 36, 88), signals::incrementAndGet);
+        hub.publish(position(1L, 35.32, 87.23));
+        hub.publish(position(2L, 64.25, 100.25));
+        assertEquals(List.of(1L), ids(subscription.drain(10)));
+        assertEquals(1, signals.get());
+    }
+
+    @Test
+    public void testSlowSubscriberKeepsLatestPositionPerDriver() {
+        DriverPositionHub.Subscription subscription = hub.subscribe(new BoundingBox(35, 87, 36, 88), signals::incrementAndGet);
+        hub.publish(position(1L, 35.32, 87.23));
+        hub.publish(position(1L, 35.40, 87.30));
+        List<DriverPositionDTO> positions = subscription.drain(10);
+        assertEquals(1, positions.size());
+        assertEquals(new GeoCoordinate(35.40, 87.30), positions.get(0).getCoordinate());
+        assertEquals(1, hub.getConflatedCount());
+        // only the transition from empty signals the subscriber
+        assertEquals(1, signals.get());
+    }
+
+    @Test
+    public void testFullQueueDropsOldestDriver() {
+        DriverPositionHub.Subscription subscription = hub.subscribe(new BoundingBox(35, 87, 36, 88), signals::incrementAndGet);
+        hub.publish(position(1L, 35.1, 87.1));
+        hub.publish(position(2L, 35.2, 87.2));
+        hub.publish(position(3L, 35.3, 87.3));
+        assertEquals(List.of(2L, 3L), ids(subscription.drain(10)));
+        assertEquals(1, hub.getDroppedCount());
+    }
+
+    @Test
+    public void testDriverLeavingTheBoxIsReportedOnce() {
+        DriverPositionHub.Subscription subscription = hub.subscribe(new BoundingBox(35, 87, 36, 88), signals::incrementAndGet);
+        hub.publish(position(1L, 35.32, 87.23));
+        subscription.drain(10);
+        hub.publish(position(1L, 40.0, 90.0));
+        hub.publish(position(1L, 41.0, 91.0));
+        hub.publish(new DriverPositionDTO(2L, null, "OFFLINE", Instant.now()));
+        List<DriverPositionDTO> positions = subscription.drain(10);
+        assertEquals(1, positions.size());
+        assertEquals(new GeoCoordinate(40.0, 90.0), positions.get(0).getCoordinate());
+    }
+
+    @Test
+    public void testBoxAcrossTheAntimeridian() {
+        DriverPositionHub.Subscription subscription = hub.subscribe(new BoundingBox(-10, 170, 10, -170), signals::incrementAndGet);
+        hub.publish(position(1L, 0, 179.5));
+        hub.publish(position(2L, 0, -179.5));
+        hub.publish(position(3L, 0, 0));
+        assertEquals(List.of(1L, 2L), ids(subscription.drain(10)));
+    }
+
+    @Test
+    public void testClosedSubscriptionNoLongerReceives() {
+        DriverPositionHub.Subscription subscription = hub.subscribe(new BoundingBox(35, 87, 36, 88), signals::incrementAndGet);
+        subscription.close();
+        hub.publish(position(1L, 35.32, 87.23));
+        assertTrue(subscription.isEmpty());
+        assertEquals(0, hub.getSubscriberCount());
+    }
+
+    @Test
+    public void testInvalidBoxIsRejected() {
+        assertThrows(InvalidConstraintsException.class, () -> hub.subscribe(new BoundingBox(36, 87, 35, 88), signals::incrementAndGet));
+    }
+
+    private static DriverPositionDTO position(Long id, double latitude, double longitude) {
+        return new DriverPositionDTO(id, new GeoCoordinate(latitude, longitude), "ONLINE", Instant.now());
+    }
+
+    private static List<Long> ids(List<DriverPositionDTO> positions) {
+        return positions.stream().map(DriverPositionDTO::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sharing.car.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.sharing.car.exception.ServiceUnavailableException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DriverRequestExecutorTest {
+
+    DriverRequestExecutor executor;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testSyncModeRunsOnCallingThread() {
+        executor = new DriverRequestExecutor(DriverRequestExecutor.Mode.SYNC, 1, 1);
+        CompletableFuture<String> result = executor.submit(() -> Thread.currentThread().getName());
+        assertTrue(result.isDone());
+        assertEquals(Thread.currentThread().getName(), result.join());
+    }
+
+    @Test
+    public void testAsyncModeRunsOnPool() throws Exception {
+        executor = new DriverRequestExecutor(DriverRequestExecutor.Mode.ASYNC, 1, 1);
+        String thread = executor.submit(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+        assertTrue(thread.startsWith("driver-request-"));
+    }
+
+    @Test
+    public void testFullQueueIsRejected() throws Exception {
+        executor = new DriverRequestExecutor(DriverRequestExecutor.Mode.ASYNC, 1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> running = executor.submit(() -> {
+            started.countDown();
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Integer> queued = executor.submit(() -> 1);
+        assertEquals(1, executor.getQueueDepth());
+
+        assertThrows(ServiceUnavailableException.class, () -> executor.submit(() -> 2));
+        assertEquals(1, executor.getRejectedCount());
+
+        release.countDown();
+        assertTrue(running.get(5, TimeUnit.SECONDS));
+        assertEquals(1, queued.get(5, TimeUnit.SECONDS));
+    }
+}
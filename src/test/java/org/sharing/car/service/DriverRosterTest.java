@@ -0,0 +1,101 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package org.sharing.car.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.dto.DriverDTO;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DriverRosterTest {
+
+    DriverRoster roster;
+
+    @BeforeEach
+    public void setUp() {
+        roster = new DriverRoster();
+        for (long id = 1; id <= 5; id++) {
+            roster.update(driver(id, "ONLINE"));
+        }
+    }
+
+    @Test
+    public void testOfflineDriverIsRemoved() {
+        roster.update(driver(3L, "OFFLINE"));
+        assertFalse(roster.contains(3L));
+        assertEquals(4, roster.size());
+    }
+
+    @Test
+    public void testPageInIdOrder() {
+        assertEquals(List.of(3L, 4L), ids(roster.page(true, null, 2, 2)));
+        assertEquals(List.of(5L, 4L), ids(roster.page(false, null, 0, 2)));
+        assertEquals(List.of(), ids(roster.page(true, null, 10, 2)));
+    }
+
+    @Test
+    public void testPageAfterId() {
+        assertEquals(List.of(4L, 5L), ids(roster.page(true, 3L, 0, 10)));
+        assertEquals(List.of(2L, 1L), ids(roster.page(false, 3L, 0, 10)));
+    }
+
+    @Test
+    public void testPageKeepsOrderAcrossUpdates() {
+        roster.update(driver(10L, "ONLINE"));
+        roster.update(driver(7L, "ONLINE"));
+        roster.update(driver(4L, "OFFLINE"));
+        assertEquals(List.of(7L, 10L), ids(roster.page(true, 6L, 0, 10)));
+        assertEquals(List.of(5L, 3L), ids(roster.page(false, 6L, 0, 2)));
+        assertEquals(List.of(3L, 2L), ids(roster.page(false, 6L, 1, 2)));
+    }
+
+    @Test
+    public void testMoveOnlyTracksOnlineDrivers() {
+        roster.moveTo(2L, new GeoCoordinate(48.13, 11.58));
+        roster.moveTo(9L, new GeoCoordinate(48.13, 11.58));
+        assertEquals(new GeoCoordinate(48.13, 11.58), roster.get(2L).getCoordinate());
+        assertFalse(roster.contains(9L));
+    }
+
+    @Test
+    public void testReadsAreCopiesWithoutPassword() {
+        DriverDTO driver = roster.get(1L);
+        assertNull(driver.getPassword());
+        driver.setFirstName("Changed");
+        assertEquals("Allan", roster.get(1L).getFirstName());
+    }
+
+    @Test
+    public void testPageSkipsDriversGoneOffline() {
+        roster.remove(2L);
+        assertEquals(List.of(1L, 3L, 4L), ids(roster.page(true, null, 0, 3)));
+        assertEquals(List.of(5L, 4L, 3L, 1L), ids(roster.page(false, null, 0, 10)));
+    }
+
+    private static DriverDTO driver(long id, String status) {
+        return new DriverDTO(id, "Allan", "Hufflepuff", "ahufflepuff@hotmail.com", "hotmail123", 43, new GeoCoordinate(52.52, 13.40), status);
+    }
+
+    private static List<Long> ids(List<DriverDTO> drivers) {
+        return drivers.stream().map(DriverDTO::getId).collect(Collectors.toList());
+    }
+}
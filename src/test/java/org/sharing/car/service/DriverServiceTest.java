@@ -19,25 +19,63 @@ package org.sharing.car.service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.modelmapper.ModelMapper;
+import org.sharing.car.config.CacheConfig;
+import org.sharing.car.domainvalue.BoundingBox;
 import org.sharing.car.domainvalue.GeoCoordinate;
 import org.sharing.car.domainvalue.OnlineStatus;
+import org.sharing.car.dto.DriverChangesDTO;
 import org.sharing.car.dto.DriverDTO;
+import org.sharing.car.dto.DriverFilter;
+import org.sharing.car.dto.DriverLocationDTO;
+import org.sharing.car.dto.DriverPositionDTO;
+import org.sharing.car.dto.DriverSlice;
 import org.sharing.car.entity.Driver;
+import org.sharing.car.entity.DriverTombstone;
+import org.sharing.car.exception.DriverConflictException;
 import org.sharing.car.exception.DriverNotFoundException;
+import org.sharing.car.exception.DuplicateEmailException;
 import org.sharing.car.exception.InvalidConstraintsException;
+import org.sharing.car.exception.PreconditionFailedException;
+import org.sharing.car.exception.ResyncRequiredException;
+import org.sharing.car.mapper.DriverMapper;
 import org.sharing.car.repository.DriverRepository;
+import org.sharing.car.repository.DriverTombstoneRepository;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
 import org.springframework.data.domain.*;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -50,7 +88,31 @@ public class DriverServiceTest {
     private DriverService driverService;
 
     @Mock
-    private ModelMapper mapper;
+    private DriverMapper mapper;
+
+    @Mock
+    private DriverLocationIndex locationIndex;
+
+    @Mock
+    private DriverLocationBuffer locationBuffer;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private DriverPositionHub positionHub;
+
+    @Spy
+    private DriverRoster roster = new DriverRoster();
+
+    @Mock
+    private DriverTombstoneRepository tombstoneRepository;
+
+    @Spy
+    private DriverEmailFilter emailFilter = new DriverEmailFilter(1000, 0.01, 0.1);
+
+    Cache driverCache = new ConcurrentMapCache(CacheConfig.DRIVERS);
+    Cache pageCache = new ConcurrentMapCache(CacheConfig.DRIVER_PAGES);
 
     List<DriverDTO> drivers = new ArrayList<>();
     List<Driver> driverEntities = new ArrayList<>();
@@ -61,6 +123,12 @@ public class DriverServiceTest {
 
     @BeforeEach
     public void setUp() {
+        lenient().when(cacheManager.getCache(CacheConfig.DRIVERS)).thenReturn(driverCache);
+        lenient().when(cacheManager.getCache(CacheConfig.DRIVER_PAGES)).thenReturn(pageCache);
+        ReflectionTestUtils.setField(driverService, "hotPages", 1);
+        ReflectionTestUtils.setField(driverService, "changesSettleMs", 2000L);
+        ReflectionTestUtils.setField(driverService, "tombstoneRetentionHours", 24L);
+        ReflectionTestUtils.setField(driverService, "maxChangesLimit", 100);
         driver1 = new DriverDTO(1L, "Allan", "Hufflepuff", "ahufflepuff@hotmail.com", "hotmail123", 43, new GeoCoordinate(35.32, 87.23), "ONLINE");
         driverEntity1 = new Driver("Allan", "Hufflepuff", "ahufflepuff@hotmail.com", "hotmail123", 43, new GeoCoordinate(35.32, 87.23), OnlineStatus.ONLINE);
         driver2 = new DriverDTO(2L, "John", "Maier", "jmaeir@t-online.com", "abc234", 26, new GeoCoordinate(64.25, 100.25), "ONLINE");
@@ -79,12 +147,95 @@ public class DriverServiceTest {
 
     @Test
     public void testCreateValidDriver() {
-        when(mapper.map(driver1, Driver.class)).thenReturn(driverEntity1);
-        when(mapper.map(driverEntity1, DriverDTO.class)).thenReturn(driver1);
+        when(mapper.toEntity(driver1)).thenReturn(driverEntity1);
+        when(mapper.toDTO(driverEntity1)).thenReturn(driver1);
         when(driverRepository.save(driverEntity1)).thenAnswer(invocation -> invocation.getArgument(0));
         assertEquals(driver1, driverService.createDriver(driver1));
     }
 
+    @Test
+    public void testCreateLeavesRosterUntilCommit() {
+        when(mapper.toEntity(driver1)).thenReturn(driverEntity1);
+        when(mapper.toDTO(driverEntity1)).thenReturn(driver1);
+        when(driverRepository.save(driverEntity1)).thenAnswer(invocation -> invocation.getArgument(0));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            driverService.createDriver(driver1);
+            assertFalse(roster.contains(1L));
+            verify(locationIndex, never()).update(any(Driver.class));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertTrue(roster.contains(1L));
+        verify(locationIndex, times(1)).update(driverEntity1);
+    }
+
+    @Test
+    public void testCreateDriverWithNewEmailSkipsLookup() {
+        when(mapper.toEntity(driver1)).thenReturn(driverEntity1);
+        when(mapper.toDTO(driverEntity1)).thenReturn(driver1);
+        when(driverRepository.save(driverEntity1)).thenAnswer(invocation -> invocation.getArgument(0));
+        driverService.createDriver(driver1);
+        verify(driverRepository, never()).existsByEmail(anyString());
+        assertTrue(emailFilter.mightContain(driver1.getEmail()));
+    }
+
+    @Test
+    public void testCreateDriverWithRegisteredEmail() {
+        emailFilter.put(driver1.getEmail());
+        when(driverRepository.existsByEmail(driver1.getEmail())).thenReturn(true);
+        assertThrows(DuplicateEmailException.class, () -> driverService.createDriver(driver1));
+        verify(driverRepository, never()).save(any());
+    }
+
+    @Test
+    public void testCreateDriversWithRegisteredEmail() {
+        emailFilter.put(driver2.getEmail());
+        when(driverRepository.findExistingEmails(List.of(driver2.getEmail()))).thenReturn(List.of(driver2.getEmail()));
+        assertThrows(DuplicateEmailException.class, () -> driverService.createDrivers(drivers));
+        verify(driverRepository, never()).saveAll(any());
+    }
+
+    @Test
+    public void testFindDriverByEmail() {
+        driverEntity2.setId(2L);
+        when(driverRepository.findByEmail(driver2.getEmail())).thenReturn(Optional.of(driverEntity2));
+        when(mapper.toDTO(driverEntity2)).thenReturn(driver2);
+        assertEquals(driver2, driverService.findDriverByEmail(driver2.getEmail()));
+        assertEquals(driver2, driverCache.get(2L, DriverDTO.class));
+    }
+
+    @Test
+    public void testFindDeletedDriverByEmailFromLaggingReplica() {
+        driverEntity2.setId(2L);
+        driverCache.put(2L, null);
+        when(driverRepository.findByEmail(driver2.getEmail())).thenReturn(Optional.of(driverEntity2));
+        assertThrows(DriverNotFoundException.class, () -> driverService.findDriverByEmail(driver2.getEmail()));
+        assertNull(driverCache.get(2L).get());
+        assertThrows(DriverNotFoundException.class, () -> driverService.findDriverById(2L));
+    }
+
+    @Test
+    public void testFindDriverKeepsEntryCachedDuringRead() {
+        DriverDTO updated = driver1.withVersion(4L);
+        when(driverRepository.findById(1L)).thenAnswer(invocation -> {
+            // an update commits while the row is being read
+            driverCache.put(1L, updated);
+            return Optional.of(driverEntity1);
+        });
+        when(mapper.toDTO(driverEntity1)).thenReturn(driver1);
+        driverService.findDriverById(1L);
+        assertEquals(updated, driverCache.get(1L, DriverDTO.class));
+        assertEquals(updated, driverService.findDriverById(1L));
+    }
+
+    @Test
+    public void testFindDriverByUnknownEmail() {
+        when(driverRepository.findByEmail("nobody@carshare.org")).thenReturn(Optional.empty());
+        assertThrows(DriverNotFoundException.class, () -> driverService.findDriverByEmail("nobody@carshare.org"));
+    }
+
     @Test
     public void testFindInvalidDriver() {
         when(driverRepository.findById(2L)).thenThrow(DriverNotFoundException.class);
@@ -95,15 +246,15 @@ public class DriverServiceTest {
     public void testFindAllDrivers() {
         Pageable pageable = PageRequest.of(0, 5, Sort.by("id").ascending());
         Page<Driver> driverEntitiesPage = new PageImpl<>(driverEntities);
-        lenient().when(mapper.map(driverEntity1, DriverDTO.class)).thenReturn(driver1);
-        lenient().when(mapper.map(driverEntity2, DriverDTO.class)).thenReturn(driver2);
+        lenient().when(mapper.toDTO(driverEntity1)).thenReturn(driver1);
+        lenient().when(mapper.toDTO(driverEntity2)).thenReturn(driver2);
         when(driverRepository.findAll(pageable)).thenReturn(driverEntitiesPage);
         assertEquals(drivers, driverService.findAllDrivers(0, 5, "asc", "id"));
     }
 
     @Test
     public void testFindValidDriver() {
-        when(mapper.map(driverEntity1, DriverDTO.class)).thenReturn(driver1);
+        when(mapper.toDTO(driverEntity1)).thenReturn(driver1);
         when(driverRepository.findById(1L)).thenReturn(Optional.of(driverEntity1));
         assertEquals(driver1, driverService.findDriverById(1L));
     }
@@ -117,10 +268,16 @@ public class DriverServiceTest {
     @Test
     public void testUpdateValidDriver() {
         when(driverRepository.findById(1L)).thenReturn(Optional.of(driverEntity1));
-        when(driverRepository.save(driverEntity1)).thenReturn(driverEntity1);
-        when(mapper.map(driver1, Driver.class)).thenReturn(driverEntity1);
-        when(mapper.map(driverEntity1, DriverDTO.class)).thenReturn(driver1);
+        when(driverRepository.saveAndFlush(driverEntity1)).thenReturn(driverEntity1);
+        when(mapper.toDTO(driverEntity1)).thenReturn(driver1);
         assertEquals(driver1, driverService.updateDriver(driver1, 1L));
+        verify(mapper, times(1)).copyToEntity(driver1, driverEntity1);
+
+        ArgumentCaptor<DriverPositionDTO> position = ArgumentCaptor.forClass(DriverPositionDTO.class);
+        verify(positionHub).publish(position.capture());
+        assertEquals(1L, position.getValue().getId());
+        assertEquals(driver1.getCoordinate(), position.getValue().getCoordinate());
+        assertEquals("ONLINE", position.getValue().getStatus());
     }
 
     @Test
@@ -134,5 +291,439 @@ public class DriverServiceTest {
         when(driverRepository.findById(1L)).thenReturn(Optional.of(driverEntity1));
         driverService.deleteDriver(1L);
         verify(driverRepository, times(1)).deleteById(1L);
+        verify(tombstoneRepository, times(1)).save(argThat(tombstone -> tombstone.getDriverId() == 1L));
+    }
+
+    @Test
+    public void testFindNearbyDrivers() {
+        driverEntity1.setId(1L);
+        driverEntity2.setId(2L);
+        roster.update(driver1);
+        roster.update(driver2);
+        when(locationIndex.findNearest(35.3, 87.2, 5, 10)).thenReturn(Arrays.asList(
+                new DriverLocationIndex.Neighbour(2L, 0.5), new DriverLocationIndex.Neighbour(1L, 1.5)));
+        assertEquals(Arrays.asList(listed(driver2), listed(driver1)), driverService.findNearbyDrivers(35.3, 87.2, 5, 10, OnlineStatus.ONLINE));
+        verifyNoInteractions(driverRepository);
+    }
+
+    @Test
+    public void testFindNearbyDriversWithInvalidRadius() {
+        assertThrows(InvalidConstraintsException.class, () -> driverService.findNearbyDrivers(35.3, 87.2, 0, 10, OnlineStatus.ONLINE));
+    }
+
+    @Test
+    public void testFindOfflineNearbyDriversQueriesDatabase() {
+        when(driverRepository.findWithinRadius(eq(35.3), eq(87.2), eq(5d), anyDouble(), anyDouble(), anyDouble(), anyDouble(), eq("OFFLINE"), eq(10)))
+                .thenReturn(Collections.singletonList(driverEntity1));
+        when(mapper.toDTO(driverEntity1)).thenReturn(driver1);
+        assertEquals(Collections.singletonList(driver1), driverService.findNearbyDrivers(35.3, 87.2, 5, 10, OnlineStatus.OFFLINE));
+        verifyNoInteractions(locationIndex);
+    }
+
+    @Test
+    public void testFindDriversInBoxAcrossAntimeridian() {
+        when(driverRepository.findInBoundingBoxAcrossAntimeridian(eq(-10d), eq(170d), eq(10d), eq(-170d), any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(Collections.singletonList(driverEntity1)));
+        when(mapper.toDTO(driverEntity1)).thenReturn(driver1);
+        assertEquals(Collections.singletonList(driver1), driverService.findDriversInBox(new BoundingBox(-10, 170, 10, -170), 20));
+        verify(driverRepository, never()).findInBoundingBox(anyDouble(), anyDouble(), anyDouble(), anyDouble(), any());
+    }
+
+    @Test
+    public void testFindDriversInInvalidBox() {
+        assertThrows(InvalidConstraintsException.class, () -> driverService.findDriversInBox(new BoundingBox(10, 0, -10, 5), 20));
+    }
+
+    @Test
+    public void testBuildLocationIndex() {
+        driverEntity1.setId(1L);
+        when(driverRepository.findByStatus(OnlineStatus.ONLINE)).thenReturn(Collections.singletonList(driverEntity1));
+        when(mapper.toDTO(driverEntity1)).thenReturn(driver1);
+        driverService.buildLocationIndex();
+        verify(locationIndex, times(1)).clear();
+        verify(locationIndex, times(1)).update(driverEntity1);
+        assertEquals(listed(driver1), roster.get(1L));
+    }
+
+    @Test
+    public void testUpdateDriverStatusToOffline() {
+        roster.update(driver1.withVersion(2L));
+        when(driverRepository.updateStatus(eq(1L), eq(OnlineStatus.OFFLINE), any())).thenReturn(1);
+        // another writer moved the row on since the roster copy was taken
+        when(driverRepository.findVersionById(1L)).thenReturn(Optional.of(5L));
+        DriverDTO driver = driverService.updateDriverStatus(1L, OnlineStatus.OFFLINE);
+        assertEquals("OFFLINE", driver.getStatus());
+        assertEquals(5L, driver.getVersion());
+        assertNull(roster.get(1L));
+        assertEquals(driver, driverCache.get(1L, DriverDTO.class));
+        verify(locationIndex, times(1)).remove(1L);
+        verify(driverRepository, never()).findById(any());
+    }
+
+    @Test
+    public void testUpdateDriverStatusToOnlineLoadsDriver() {
+        DriverDTO offline = driver1.withStatus("OFFLINE");
+        when(driverRepository.updateStatus(eq(1L), eq(OnlineStatus.ONLINE), any())).thenReturn(1);
+        when(driverRepository.findById(1L)).thenReturn(Optional.of(driverEntity1));
+        when(mapper.toDTO(driverEntity1)).thenReturn(offline);
+        assertEquals(driver1, driverService.updateDriverStatus(1L, OnlineStatus.ONLINE));
+        assertEquals(listed(driver1), roster.get(1L));
+        verify(locationIndex, times(1)).put(1L, 35.32, 87.23);
+    }
+
+    @Test
+    public void testUpdateStatusOfOnlineDriverSkipsWrite() {
+        roster.update(driver1);
+        assertEquals(listed(driver1), driverService.updateDriverStatus(1L, OnlineStatus.ONLINE));
+        verifyNoInteractions(driverRepository);
+    }
+
+    @Test
+    public void testUpdateStatusOfInvalidDriver() {
+        when(driverRepository.updateStatus(eq(3L), eq(OnlineStatus.OFFLINE), any())).thenReturn(0);
+        assertThrows(DriverNotFoundException.class, () -> driverService.updateDriverStatus(3L, OnlineStatus.OFFLINE));
+    }
+
+    @Test
+    public void testFindOnlineDriversFromRoster() {
+        roster.update(driver1);
+        roster.update(driver2);
+        roster.update(new DriverDTO(3L, "Mary", "Jones", "mjones@gmail.com", "gmail123", 31, new GeoCoordinate(48.13, 11.58), "OFFLINE"));
+        DriverFilter online = new DriverFilter(OnlineStatus.ONLINE, null, null, null, null);
+        assertEquals(List.of(listed(driver2)), driverService.findDrivers(online, 0, 1, "desc", "id"));
+        assertEquals(List.of(listed(driver1)), driverService.findDrivers(online, 1, 1, "desc", "id"));
+        verifyNoInteractions(driverRepository);
+    }
+
+    @Test
+    public void testFindFilteredDriversQueriesDatabase() {
+        Pageable pageable = PageRequest.of(0, 5, Sort.by("age").ascending());
+        when(driverRepository.findMatching(any(), eq(pageable))).thenReturn(List.of(driverEntity1));
+        when(mapper.toDTO(driverEntity1)).thenReturn(driver1);
+        DriverFilter filter = new DriverFilter(OnlineStatus.ONLINE, 40, null, "al", null);
+        assertEquals(List.of(driver1), driverService.findDrivers(filter, 0, 5, "asc", "age"));
+    }
+
+    @Test
+    public void testFindDriversWithInvalidAgeRange() {
+        DriverFilter filter = new DriverFilter(null, 50, 40, null, null);
+        assertThrows(InvalidConstraintsException.class, () -> driverService.findDrivers(filter, 0, 5, "asc", "id"));
+    }
+
+    @Test
+    public void testFindDriverFieldsOverlaysBufferedLocation() {
+        GeoCoordinate reported = new GeoCoordinate(35.40, 87.30);
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", 1L);
+        row.put("coordinate", new GeoCoordinate(35.32, 87.23));
+        when(driverRepository.findFields(any(), eq(new LinkedHashSet<>(List.of("coordinate"))), any())).thenReturn(List.of(row));
+        when(locationBuffer.get(1L)).thenReturn(Optional.of(reported));
+        List<Map<String, Object>> rows = driverService.findDriverFields(new DriverFilter(), List.of("coordinate", " coordinate"), 0, 5, "asc", "id");
+        assertEquals(reported, rows.get(0).get("coordinate"));
+    }
+
+    @Test
+    public void testExportDriversStreamsWithBufferedLocation() {
+        GeoCoordinate reported = new GeoCoordinate(35.40, 87.30);
+        ReflectionTestUtils.setField(driverService, "exportFetchSize", 250);
+        when(driverRepository.streamAll(250)).thenReturn(driverEntities.stream());
+        when(mapper.toDTO(driverEntity1)).thenReturn(driver1);
+        when(mapper.toDTO(driverEntity2)).thenReturn(driver2);
+        when(locationBuffer.get(1L)).thenReturn(Optional.of(reported));
+        List<DriverDTO> exported = new ArrayList<>();
+        driverService.exportDrivers(exported::add);
+        assertEquals(List.of(driver1.withCoordinate(reported), driver2), exported);
+    }
+
+    @Test
+    public void testFindDriverPasswordsIsRejected() {
+        assertThrows(InvalidConstraintsException.class, () -> driverService.findDriverFields(new DriverFilter(), List.of("id", "password"), 0, 5, "asc", "id"));
+        verifyNoInteractions(driverRepository);
+    }
+
+    @Test
+    public void testFindOnlineDriverSlices() {
+        roster.update(driver1);
+        roster.update(driver2);
+        DriverSlice first = driverService.findOnlineDriversAfter(null, 1, "asc");
+        assertEquals(List.of(listed(driver1)), first.getDrivers());
+        DriverSlice second = driverService.findOnlineDriversAfter(first.getNextCursor(), 1, "asc");
+        assertEquals(List.of(listed(driver2)), second.getDrivers());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    public void testFindDriverServesBufferedLocation() {
+        GeoCoordinate reported = new GeoCoordinate(35.40, 87.30);
+        driver1.setCoordinate(new GeoCoordinate(35.32, 87.23));
+        when(mapper.toDTO(driverEntity1)).thenReturn(driver1);
+        when(driverRepository.findById(1L)).thenReturn(Optional.of(driverEntity1));
+        when(locationBuffer.get(1L)).thenReturn(Optional.of(reported));
+        assertEquals(reported, driverService.findDriverById(1L).getCoordinate());
+    }
+
+    @Test
+    public void testUpdateLocationOfInvalidDriver() {
+        when(driverRepository.existsById(2L)).thenReturn(false);
+        assertThrows(DriverNotFoundException.class, () -> driverService.updateDriverLocation(2L, new GeoCoordinate(35.40, 87.30)));
+        verify(locationBuffer, never()).record(any(), any());
+    }
+
+    @Test
+    public void testUpdateLocationOfIndexedDriver() {
+        GeoCoordinate reported = new GeoCoordinate(35.40, 87.30);
+        when(locationIndex.contains(1L)).thenReturn(true);
+        driverService.updateDriverLocation(1L, reported);
+        verify(locationBuffer, times(1)).record(1L, reported);
+        verify(locationIndex, times(1)).put(1L, 35.40, 87.30);
+        verify(driverRepository, never()).existsById(any());
+
+        ArgumentCaptor<DriverPositionDTO> position = ArgumentCaptor.forClass(DriverPositionDTO.class);
+        verify(positionHub).publish(position.capture());
+        assertEquals(reported, position.getValue().getCoordinate());
+        assertNull(position.getValue().getStatus());
+    }
+
+    @Test
+    public void testUpdateDriverLocationsReportsUnknownDrivers() {
+        GeoCoordinate reported = new GeoCoordinate(35.40, 87.30);
+        when(locationIndex.contains(1L)).thenReturn(true);
+        when(driverRepository.findExistingIds(Set.of(2L, 3L))).thenReturn(List.of(2L));
+        List<Long> unknown = driverService.updateDriverLocations(Arrays.asList(
+                new DriverLocationDTO(1L, reported), new DriverLocationDTO(2L, reported), new DriverLocationDTO(3L, reported)));
+        assertEquals(List.of(3L), unknown);
+        verify(locationBuffer, times(1)).record(1L, reported);
+        verify(locationBuffer, times(1)).record(2L, reported);
+        verify(locationBuffer, never()).record(eq(3L), any());
+    }
+
+    @Test
+    public void testFindFirstDriverSlice() {
+        driverEntity1.setId(1L);
+        driverEntity2.setId(2L);
+        Pageable pageable = PageRequest.of(0, 2, Sort.by("id").ascending());
+        when(driverRepository.findAllBy(pageable)).thenReturn(new SliceImpl<>(driverEntities, pageable, true));
+        when(mapper.toDTO(driverEntity1)).thenReturn(driver1);
+        when(mapper.toDTO(driverEntity2)).thenReturn(driver2);
+        DriverSlice slice = driverService.findDriversAfter(null, 2, "asc");
+        assertEquals(drivers, slice.getDrivers());
+        assertEquals(DriverService.encodeCursor(2L, true), slice.getNextCursor());
+    }
+
+    @Test
+    public void testFindDriverSliceAfterCursor() {
+        Pageable pageable = PageRequest.of(0, 2, Sort.by("id").descending());
+        when(driverRepository.findByIdLessThan(2L, pageable)).thenReturn(new SliceImpl<>(List.of(driverEntity1), pageable, false));
+        when(mapper.toDTO(driverEntity1)).thenReturn(driver1);
+        DriverSlice slice = driverService.findDriversAfter(DriverService.encodeCursor(2L, false), 2, "desc");
+        assertEquals(List.of(driver1), slice.getDrivers());
+        assertNull(slice.getNextCursor());
+        verify(driverRepository, never()).count();
+    }
+
+    @Test
+    public void testFindDriverSliceWithInvalidCursor() {
+        assertThrows(InvalidConstraintsException.class, () -> driverService.findDriversAfter("not-a-cursor", 2, "asc"));
+        assertThrows(InvalidConstraintsException.class, () -> driverService.findDriversAfter(DriverService.encodeCursor(2L, false), 2, "asc"));
+    }
+
+    @Test
+    public void testFindCachedDriverSkipsRepository() {
+        driverCache.put(1L, driver1);
+        assertEquals(driver1, driverService.findDriverById(1L));
+        verify(driverRepository, never()).findById(any());
+    }
+
+    @Test
+    public void testFindDriverPopulatesCache() {
+        when(mapper.toDTO(driverEntity1)).thenReturn(driver1);
+        when(driverRepository.findById(1L)).thenReturn(Optional.of(driverEntity1));
+        driverService.findDriverById(1L);
+        driverService.findDriverById(1L);
+        verify(driverRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    public void testUpdateDriverRefreshesCaches() {
+        DriverDTO updated = driver1.withVersion(4L);
+        driverCache.put(1L, driver1);
+        pageCache.put("0:20:asc:id", drivers);
+        when(driverRepository.findById(1L)).thenReturn(Optional.of(driverEntity1));
+        when(driverRepository.saveAndFlush(driverEntity1)).thenReturn(driverEntity1);
+        when(mapper.toDTO(driverEntity1)).thenReturn(updated);
+        driverService.updateDriver(driver1, 1L);
+        assertEquals(updated, driverCache.get(1L, DriverDTO.class));
+        assertNull(pageCache.get("0:20:asc:id"));
+    }
+
+    @Test
+    public void testUpdateDriverWithStaleVersion() {
+        when(driverRepository.findById(1L)).thenReturn(Optional.of(driverEntity1));
+        assertThrows(PreconditionFailedException.class, () -> driverService.updateDriver(driver1, 1L, Set.of(3L)));
+        verify(driverRepository, never()).saveAndFlush(any());
+        verify(mapper, never()).copyToEntity(any(), any());
+    }
+
+    @Test
+    public void testUpdateDriverWithCurrentVersion() {
+        when(driverRepository.findById(1L)).thenReturn(Optional.of(driverEntity1));
+        when(driverRepository.saveAndFlush(driverEntity1)).thenReturn(driverEntity1);
+        when(mapper.toDTO(driverEntity1)).thenReturn(driver1);
+        assertEquals(driver1, driverService.updateDriver(driver1, 1L, Set.of(0L)));
+    }
+
+    @Test
+    public void testConcurrentUpdateIsRejected() {
+        when(driverRepository.findById(1L)).thenReturn(Optional.of(driverEntity1));
+        when(driverRepository.saveAndFlush(driverEntity1)).thenThrow(new ObjectOptimisticLockingFailureException(Driver.class, 1L));
+        assertThrows(DriverConflictException.class, () -> driverService.updateDriver(driver1, 1L));
+        assertNull(driverCache.get(1L));
+    }
+
+    @Test
+    public void testDeleteEvictsDriver() {
+        driverCache.put(1L, driver1);
+        driverService.deleteDriver(1L);
+        verify(driverRepository, times(1)).deleteById(1L);
+        verify(driverRepository, never()).findById(any());
+        assertNull(driverCache.get(1L).get());
+        assertThrows(DriverNotFoundException.class, () -> driverService.findDriverById(1L));
+        verify(driverRepository, never()).findById(any());
+    }
+
+    @Test
+    public void testDeleteLeavesRosterUntilCommit() {
+        roster.update(driver1);
+        driverCache.put(1L, driver1);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            driverService.deleteDriver(1L);
+            assertTrue(roster.contains(1L));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertFalse(roster.contains(1L));
+        verify(locationIndex, times(1)).remove(1L);
+    }
+
+    @Test
+    public void testFindOnlineDriverFromRoster() {
+        roster.update(driver1);
+        assertEquals(listed(driver1), driverService.findDriverById(1L));
+        verify(driverRepository, never()).findById(any());
+    }
+
+    @Test
+    public void testFindAllDriversCachesHotPages() {
+        Pageable pageable = PageRequest.of(0, 5, Sort.by("id").ascending());
+        when(mapper.toDTO(driverEntity1)).thenReturn(driver1);
+        when(mapper.toDTO(driverEntity2)).thenReturn(driver2);
+        when(driverRepository.findAll(pageable)).thenReturn(new PageImpl<>(driverEntities));
+        driverService.findAllDrivers(0, 5, "asc", "id");
+        assertEquals(drivers, driverService.findAllDrivers(0, 5, "asc", "id"));
+        verify(driverRepository, times(1)).findAll(pageable);
+    }
+
+    @Test
+    public void testLocationUpdateEvictsCachedDriver() {
+        driverCache.put(1L, driver1);
+        when(locationIndex.contains(1L)).thenReturn(true);
+        driverService.updateDriverLocation(1L, new GeoCoordinate(35.40, 87.30));
+        assertNull(driverCache.get(1L));
+    }
+
+    @Test
+    public void testCreateDrivers() {
+        driverEntity1.setId(1L);
+        driverEntity2.setId(2L);
+        when(mapper.toEntity(driver1)).thenReturn(driverEntity1);
+        when(mapper.toEntity(driver2)).thenReturn(driverEntity2);
+        when(driverRepository.saveAll(driverEntities)).thenReturn(driverEntities);
+        when(mapper.toDTO(driverEntity1)).thenReturn(driver1);
+        when(mapper.toDTO(driverEntity2)).thenReturn(driver2);
+        assertEquals(drivers, driverService.createDrivers(drivers));
+        verify(locationIndex, times(1)).update(driverEntity1);
+        verify(locationIndex, times(1)).update(driverEntity2);
+        assertEquals(driver2, driverCache.get(2L).get());
+    }
+
+    @Test
+    public void testUpdateDriversSkipsMissingDrivers() {
+        driverEntity1.setId(1L);
+        when(driverRepository.findAllById(Set.of(1L, 2L))).thenReturn(List.of(driverEntity1));
+        when(mapper.toDTO(driverEntity1)).thenReturn(driver1);
+        Map<Long, DriverDTO> updated = driverService.updateDrivers(drivers);
+        assertEquals(Map.of(1L, driver1), updated);
+        verify(mapper, times(1)).copyToEntity(driver1, driverEntity1);
+        verify(mapper, never()).copyToEntity(eq(driver2), any());
+        verify(driverRepository, never()).save(any());
+    }
+
+    @Test
+    public void testDeleteDriversInBatch() {
+        driverCache.put(1L, driver1);
+        when(driverRepository.findExistingIds(Set.of(1L, 5L))).thenReturn(List.of(1L));
+        assertEquals(Set.of(1L), driverService.deleteDrivers(List.of(1L, 5L)));
+        verify(driverRepository, times(1)).deleteAllByIdInBatch(Set.of(1L));
+        verify(tombstoneRepository, times(1)).saveAll(argThat(tombstones -> tombstones.iterator().next().getDriverId() == 1L));
+        verify(locationIndex, times(1)).remove(1L);
+        assertNull(driverCache.get(1L).get());
+    }
+
+    @Test
+    public void testFindChangesFirstSync() {
+        driverEntity1.setId(1L);
+        when(driverRepository.findChangedSince(any(), eq(0L), any(), any())).thenReturn(List.of(driverEntity1));
+        when(mapper.toDTO(driverEntity1)).thenReturn(driver1);
+        DriverChangesDTO changes = driverService.findChanges(null, 10);
+        assertEquals(List.of(driver1), changes.getChanged());
+        assertEquals(List.of(), changes.getDeleted());
+        assertFalse(changes.isHasMore());
+        DriverService.Watermark watermark = DriverService.decodeWatermark(changes.getWatermark());
+        assertEquals(Long.MAX_VALUE, watermark.getDriverId());
+        assertTrue(watermark.getUpdatedDate().isBefore(ZonedDateTime.now()));
+        verify(tombstoneRepository, times(1)).findDeletedSince(any(), eq(Long.MAX_VALUE), any(), any());
+    }
+
+    @Test
+    public void testFindChangesPagesFromWatermark() {
+        ZonedDateTime since = ZonedDateTime.now().minusHours(1).truncatedTo(ChronoUnit.MICROS);
+        String token = DriverService.encodeWatermark(new DriverService.Watermark(since, 7L, since, 3L));
+        driverEntity1.setId(8L);
+        driverEntity1.setUpdatedDate(since.plusMinutes(5));
+        driverEntity2.setId(9L);
+        when(driverRepository.findChangedSince(argThat(since::isEqual), eq(7L), any(), eq(PageRequest.of(0, 2)))).thenReturn(driverEntities);
+        when(tombstoneRepository.findDeletedSince(argThat(since::isEqual), eq(3L), any(), eq(PageRequest.of(0, 2))))
+                .thenReturn(List.of(new DriverTombstone(4L, since.plusMinutes(1))));
+        when(mapper.toDTO(driverEntity1)).thenReturn(driver1);
+        DriverChangesDTO changes = driverService.findChanges(token, 1);
+        assertEquals(List.of(driver1), changes.getChanged());
+        assertEquals(List.of(4L), changes.getDeleted());
+        assertTrue(changes.isHasMore());
+        DriverService.Watermark watermark = DriverService.decodeWatermark(changes.getWatermark());
+        assertEquals(8L, watermark.getDriverId());
+        assertTrue(driverEntity1.getUpdatedDate().isEqual(watermark.getUpdatedDate()));
+        assertEquals(Long.MAX_VALUE, watermark.getTombstoneId());
+    }
+
+    @Test
+    public void testFindChangesWithExpiredWatermark() {
+        ZonedDateTime since = ZonedDateTime.now().minusDays(2);
+        String token = DriverService.encodeWatermark(new DriverService.Watermark(since, 1L, since, 1L));
+        assertThrows(ResyncRequiredException.class, () -> driverService.findChanges(token, 10));
+    }
+
+    @Test
+    public void testFindChangesWithInvalidWatermark() {
+        assertThrows(InvalidConstraintsException.class, () -> driverService.findChanges("not-a-watermark", 10));
+        assertThrows(InvalidConstraintsException.class, () -> driverService.findChanges(DriverService.encodeCursor(2L, true), 10));
+        assertThrows(InvalidConstraintsException.class, () -> driverService.findChanges(null, 101));
+    }
+
+    // the roster keeps no password hash
+    private static DriverDTO listed(DriverDTO driver) {
+        return new DriverDTO(driver.getId(), driver.getFirstName(), driver.getLastName(), driver.getEmail(), null, driver.getAge(),
+                driver.getCoordinate(), driver.getStatus(), driver.getVersion());
     }
 }
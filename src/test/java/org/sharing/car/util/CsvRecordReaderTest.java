@@ -0,0 +1,54 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CsvRecordReaderTest {
+
+    @Test
+    public void testPlainAndQuotedFields() throws IOException {
+        CsvRecordReader reader = new CsvRecordReader(new StringReader("a,b,c\r\n\"x, y\",\"say \"\"hi\"\"\",\n1,\"two\nlines\",3"), 1024);
+        assertEquals(List.of("a", "b", "c"), reader.next());
+        assertEquals(List.of("x, y", "say \"hi\"", ""), reader.next());
+        assertEquals(List.of("1", "two\nlines", "3"), reader.next());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void testTrailingLineBreakEndsInput() throws IOException {
+        CsvRecordReader reader = new CsvRecordReader(new StringReader("a,b\n"), 1024);
+        assertEquals(List.of("a", "b"), reader.next());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void testOversizedRecordIsSkipped() throws IOException {
+        CsvRecordReader reader = new CsvRecordReader(new StringReader("a,b\n" + "c".repeat(20) + ",\"long\nquoted\"\nd,e"), 10);
+        assertEquals(List.of("a", "b"), reader.next());
+        assertThrows(IllegalArgumentException.class, reader::next);
+        assertEquals(List.of("d", "e"), reader.next());
+        assertNull(reader.next());
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.util;
+
+import org.junit.jupiter.api.Test;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.dto.DriverDTO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DriverExportWriterTest {
+
+    DriverDTO driver = new DriverDTO(1L, "Allan", "Hufflepuff", "ahufflepuff@hotmail.com", "hotmail123", 43, new GeoCoordinate(35.32, 87.23), "ONLINE", 3L);
+
+    @Test
+    public void testNdjsonWritesOneObjectPerLine() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DriverExportWriter writer = DriverExportWriter.create(DriverFileFormat.NDJSON, out)) {
+            writer.write(driver);
+            writer.write(new DriverDTO(2L, "John", "Maier", "jmaeir@t-online.com", "abc234", 26, null, "OFFLINE"));
+        }
+        assertEquals("{\"id\":1,\"firstName\":\"Allan\",\"lastName\":\"Hufflepuff\",\"email\":\"ahufflepuff@hotmail.com\",\"age\":43,"
+                + "\"coordinate\":{\"latitude\":35.32,\"longitude\":87.23},\"status\":\"ONLINE\",\"version\":3}\n"
+                + "{\"id\":2,\"firstName\":\"John\",\"lastName\":\"Maier\",\"email\":\"jmaeir@t-online.com\",\"age\":26,\"status\":\"OFFLINE\"}\n",
+                out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testCsvQuotesOnlyWhereNeeded() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DriverExportWriter writer = DriverExportWriter.create(DriverFileFormat.CSV, out)) {
+            writer.write(driver);
+            writer.write(new DriverDTO(2L, "John, Jr.", "O\"Maier", "jmaeir@t-online.com", "abc234", 26, null, "OFFLINE"));
+        }
+        assertEquals("id,firstName,lastName,email,age,latitude,longitude,status,version\r\n"
+                + "1,Allan,Hufflepuff,ahufflepuff@hotmail.com,43,35.32,87.23,ONLINE,3\r\n"
+                + "2,\"John, Jr.\",\"O\"\"Maier\",jmaeir@t-online.com,26,,,OFFLINE,\r\n",
+                out.toString(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.util;
+
+import org.junit.jupiter.api.Test;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.dto.DriverDTO;
+import org.sharing.car.exception.InvalidJsonException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class GeoCoordinateDerializerTest {
+
+    @Test
+    public void testObjectForm() {
+        assertEquals(new GeoCoordinate(35.32, 87.23), JsonMapper.deserialize(GeoCoordinate.class, "{\"latitude\":35.32,\"longitude\":87.23}"));
+    }
+
+    @Test
+    public void testObjectFormIgnoresUnknownFields() {
+        assertEquals(new GeoCoordinate(35.32, 87.23),
+                JsonMapper.deserialize(GeoCoordinate.class, "{\"longitude\":87.23,\"accuracy\":{\"meters\":5},\"latitude\":35.32}"));
+    }
+
+    @Test
+    public void testCompactArrayForm() {
+        assertEquals(new GeoCoordinate(35.32, 87.23), JsonMapper.deserialize(GeoCoordinate.class, "[35.32,87.23]"));
+    }
+
+    @Test
+    public void testNestedInDriver() {
+        DriverDTO driver = (DriverDTO) JsonMapper.deserialize(DriverDTO.class, "{\"id\":1,\"coordinate\":[35.32,87.23],\"status\":\"ONLINE\"}");
+        assertEquals(new GeoCoordinate(35.32, 87.23), driver.getCoordinate());
+        assertEquals("ONLINE", driver.getStatus());
+    }
+
+    @Test
+    public void testMissingLongitude() {
+        assertThrows(InvalidJsonException.class, () -> JsonMapper.deserialize(GeoCoordinate.class, "{\"latitude\":35.32}"));
+    }
+
+    @Test
+    public void testArrayWithExtraValues() {
+        assertThrows(InvalidJsonException.class, () -> JsonMapper.deserialize(GeoCoordinate.class, "[35.32,87.23,10]"));
+    }
+
+    @Test
+    public void testSerializedForm() {
+        assertEquals("{\"latitude\":35.32,\"longitude\":87.23}", JsonMapper.serialize(new GeoCoordinate(35.32, 87.23)));
+    }
+}
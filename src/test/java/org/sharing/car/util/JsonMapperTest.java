@@ -0,0 +1,104 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.junit.jupiter.api.Test;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.dto.DriverDTO;
+import org.sharing.car.exception.InvalidJsonException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonMapperTest {
+
+    DriverDTO driver = new DriverDTO(1L, "Allan", "Hufflepuff", "ahufflepuff@hotmail.com", "hotmail123", 43, new GeoCoordinate(35.32, 87.23), "ONLINE");
+
+    @Test
+    public void testRoundTrip() {
+        assertEquals(driver, JsonMapper.deserialize(DriverDTO.class, JsonMapper.serialize(driver)));
+    }
+
+    @Test
+    public void testListRoundTrip() throws Exception {
+        List<DriverDTO> drivers = JsonMapper.mapListFromJson(JsonMapper.serialize(List.of(driver)), new TypeReference<List<DriverDTO>>() {
+        });
+        assertEquals(List.of(driver), drivers);
+    }
+
+    @Test
+    public void testStreamingSerializeMatchesString() {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        JsonMapper.serialize(driver, outputStream);
+        assertEquals(JsonMapper.serialize(driver), outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testBinaryFormatsRoundTripWithCompactCoordinates() throws Exception {
+        List<DriverDTO> drivers = drivers(200);
+        TypeReference<List<DriverDTO>> type = new TypeReference<>() {
+        };
+        byte[] json = JsonMapper.getObjectMapper().writeValueAsBytes(drivers);
+        byte[] smile = JsonMapper.getSmileMapper().writeValueAsBytes(drivers);
+        byte[] cbor = JsonMapper.getCborMapper().writeValueAsBytes(drivers);
+        assertEquals(drivers, JsonMapper.getSmileMapper().readValue(smile, type));
+        assertEquals(drivers, JsonMapper.getCborMapper().readValue(cbor, type));
+        assertTrue(smile.length < json.length * 0.6, smile.length + " Smile bytes against " + json.length + " JSON bytes");
+        assertTrue(cbor.length < json.length * 0.9, cbor.length + " CBOR bytes against " + json.length + " JSON bytes");
+    }
+
+    @Test
+    public void testCompactCoordinateIsAnArray() throws Exception {
+        GeoCoordinate coordinate = new GeoCoordinate(35.32, 87.23);
+        byte[] cbor = JsonMapper.getCborMapper().writeValueAsBytes(coordinate);
+        assertTrue(JsonMapper.getCborMapper().readTree(cbor).isArray());
+        assertEquals(coordinate, JsonMapper.getCborMapper().readValue(cbor, GeoCoordinate.class));
+        assertTrue(JsonMapper.serialize(coordinate).contains("\"latitude\""));
+    }
+
+    @Test
+    public void testReadersAndWritersAreCached() {
+        assertSame(JsonMapper.readerFor(DriverDTO.class), JsonMapper.readerFor(DriverDTO.class));
+        assertSame(JsonMapper.writerFor(DriverDTO.class), JsonMapper.writerFor(DriverDTO.class));
+    }
+
+    @Test
+    public void testUnknownPropertiesAreIgnored() {
+        DriverDTO parsed = (DriverDTO) JsonMapper.deserialize(DriverDTO.class, "{\"id\":1,\"nickname\":\"al\"}");
+        assertEquals(1L, parsed.getId());
+    }
+
+    @Test
+    public void testInvalidJson() {
+        assertThrows(InvalidJsonException.class, () -> JsonMapper.deserialize(DriverDTO.class, "{\"id\":"));
+    }
+
+    private static List<DriverDTO> drivers(int count) {
+        List<DriverDTO> drivers = new ArrayList<>(count);
+        for (long id = 1; id <= count; id++) {
+            drivers.add(new DriverDTO(id, "Allan" + id, "Hufflepuff", "ahufflepuff" + id + "@hotmail.com", "hotmail123", 43,
+                    new GeoCoordinate(35.32 + id / 1000d, 87.23 - id / 1000d), (id % 3 == 0) ? "OFFLINE" : "ONLINE", id % 7));
+        }
+        return drivers;
+    }
+}
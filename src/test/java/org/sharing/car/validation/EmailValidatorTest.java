@@ -0,0 +1,123 @@
+/*
+ *    Copyright 2021 Bhaskar Gogoi
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package org.sharing.car.validation;
+
+import org.junit.jupiter.api.Test;
+import org.sharing.car.domainvalue.GeoCoordinate;
+import org.sharing.car.domainvalue.OnlineStatus;
+import org.sharing.car.dto.DriverCreationDTO;
+import org.sharing.car.dto.DriverUpdationDTO;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmailValidatorTest {
+
+    @Test
+    public void testValidAddresses() {
+        for (String email : List.of("ahufflepuff@hotmail.com", "J.Maier@T-Online.de", "first.last+tag@mail.example.org",
+                "o'brien@example.ie", "\"john doe\"@example.com", "\"quote\\\"d\"@example.com", "ops@[192.168.0.1]",
+                "jürgen@müller.de", "a@b.co")) {
+            assertTrue(EmailValidator.isValid(email), email);
+        }
+    }
+
+    @Test
+    public void testInvalidAddresses() {
+        for (String email : List.of("", "plainaddress", "@example.com", "user@", "user@localhost", ".user@example.com",
+                "user.@example.com", "us..er@example.com", "user@example..com", "user@.example.com", "user@example.com.",
+                "user@-example.com", "user@example-.com", "user@exa_mple.com", "us er@example.com", "user@@example.com",
+                "\"unterminated@example.com", "\"quoted\"user@example.com", "ops@[256.1.1.1]", "ops@[1.1.1]",
+                "ops@[1.1.1.1.1]", "ops@[1.1.1.1", "ops@[1..1.1]")) {
+            assertFalse(EmailValidator.isValid(email), email);
+        }
+        assertFalse(EmailValidator.isValid(null));
+        assertTrue(new EmailValidator().isValid(null, null));
+    }
+
+    @Test
+    public void testLengthLimits() {
+        String label = "a".repeat(63);
+        assertTrue(EmailValidator.isValid("a".repeat(64) + "@example.com"));
+        assertFalse(EmailValidator.isValid("a".repeat(65) + "@example.com"));
+        assertTrue(EmailValidator.isValid("user@" + label + ".com"));
+        assertFalse(EmailValidator.isValid("user@" + label + "a.com"));
+        String longest = "a".repeat(64) + "@" + String.join(".", label, label, "a".repeat(61));
+        assertEquals(EmailValidator.MAX_LENGTH, longest.length());
+        assertTrue(EmailValidator.isValid(longest));
+        assertFalse(EmailValidator.isValid(longest + "a"));
+    }
+
+    // the old update regex overflowed the stack or backtracked for milliseconds on inputs like these, all short enough
+    // to get past the length check and into the scan
+    @Test
+    public void testAdversarialInputsFinishInBoundedTime() {
+        List<String> inputs = List.of("a@" + "a.".repeat(120) + "-", "a@" + "a-".repeat(120) + "!",
+                "a.".repeat(31) + "a@" + "a.".repeat(90) + "-", "a.".repeat(120) + "@example.com", "a.".repeat(126) + "!",
+                "a@[" + "1.".repeat(124) + "1]", "\"" + "\\a".repeat(126), "a".repeat(253) + "!");
+        for (String input : inputs) {
+            assertTrue(input.length() <= EmailValidator.MAX_LENGTH, input);
+        }
+        // warmed up first, the bound is about the scan and not about how quickly the JIT compiles it
+        Runnable rounds = () -> {
+            for (int i = 0; i < 10_000; i++) {
+                for (String input : inputs) {
+                    assertFalse(EmailValidator.isValid(input));
+                }
+            }
+        };
+        rounds.run();
+        assertTimeout(Duration.ofMillis(500), rounds::run);
+    }
+
+    @Test
+    public void testCreationAndUpdationShareRules() {
+        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+        DriverCreationDTO creation = new DriverCreationDTO("Allan", "Hufflepuff", "AHufflepuff@hotmail", "hotmail123", 14, new GeoCoordinate(35.32, 87.23));
+        DriverUpdationDTO updation = new DriverUpdationDTO(1L, "Allan", "Hufflepuff", "AHufflepuff@hotmail", "hotmail123", 14,
+                new GeoCoordinate(35.32, 87.23), OnlineStatus.ONLINE);
+        Set<String> expected = Set.of("Email must not be empty", "Age must be greater than or equal to  15");
+        assertEquals(expected, messages(validator.validate(creation)));
+        assertEquals(expected, messages(validator.validate(updation)));
+
+        creation.setEmail("AHufflepuff@hotmail.com");
+        creation.setAge(121);
+        assertEquals(Set.of("Age must be less than 120"), messages(validator.validate(creation)));
+        creation.setEmail(null);
+        creation.setAge(43);
+        Set<ConstraintViolation<DriverCreationDTO>> missing = validator.validate(creation);
+        assertEquals(1, missing.size());
+        assertEquals(NotNull.class, missing.iterator().next().getConstraintDescriptor().getAnnotation().annotationType());
+        assertEquals(Set.of("Email must not be empty"), messages(missing));
+        updation.setEmail(null);
+        updation.setAge(43);
+        assertEquals(Set.of("Email must not be empty"), messages(validator.validate(updation)));
+    }
+
+    private static Set<String> messages(Set<? extends ConstraintViolation<?>> violations) {
+        return violations.stream().map(ConstraintViolation::getMessage).collect(Collectors.toSet());
+    }
+}